@@ -0,0 +1,329 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.forge;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.apache.logging.log4j.*;
+
+import api.player.model.*;
+
+// header, enhanced class bytes, sorted index, footer pointing to the index - new class bytes are only
+// ever appended under an exclusive lock so instances sharing a game directory keep their mappings valid,
+// a file that has to be replaced is written anew and renamed over the old one instead
+public class RenderPlayerAPIEnhancerClassCache
+{
+	private static final int Magic = 0x52504143;
+	private static final int HeaderSize = 12;
+	private static final int FooterSize = 16;
+	private static final int IndexEntrySize = 20;
+
+	// beyond this size the cache is rewritten with only the classes the current run used
+	private static final long MaxSize = 32 << 20;
+
+	private final File file;
+	private final File pending;
+	private final long enhancer;
+	private final Map<Long, byte[]> added;
+	private final Set<Long> used;
+	private final AtomicInteger hits;
+	private final AtomicInteger misses;
+
+	private long[] keys;
+	private long[] offsets;
+	private int[] lengths;
+	private MappedByteBuffer mapped;
+	private int saved;
+
+	public RenderPlayerAPIEnhancerClassCache(File file, long enhancer)
+	{
+		this.file = file;
+		this.pending = new File(file.getPath() + ".new");
+		this.enhancer = enhancer;
+		this.added = new ConcurrentHashMap<Long, byte[]>();
+		this.used = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+		this.hits = new AtomicInteger();
+		this.misses = new AtomicInteger();
+		this.keys = new long[0];
+		this.offsets = new long[0];
+		this.lengths = new int[0];
+		this.saved = -1;
+
+		// a rewrite of the previous start replaces the file before anything maps it
+		if(pending.exists() && !replace(pending, file))
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer keeps its class cache '%s' because it could not be replaced by '%s'", file, pending);
+		if(file.exists())
+			open();
+
+		// armor models can still be loaded after the game finished loading
+		Runtime.getRuntime().addShutdownHook(new Thread("Render Player API Enhancer Class Cache")
+		{
+			@Override
+			public void run()
+			{
+				save();
+			}
+		});
+	}
+
+	public byte[] get(long key)
+	{
+		int index = Arrays.binarySearch(keys, key);
+		if(index < 0)
+			return added.get(key);
+
+		used.add(key);
+		hits.incrementAndGet();
+		return load(index);
+	}
+
+	public boolean contains(long key)
+	{
+		return Arrays.binarySearch(keys, key) >= 0 || added.containsKey(key);
+	}
+
+	public void put(long key, byte[] bytes)
+	{
+		if(Arrays.binarySearch(keys, key) < 0 && added.put(key, bytes) == null)
+			misses.incrementAndGet();
+	}
+
+	public synchronized void save()
+	{
+		Map<Long, byte[]> entries = new HashMap<Long, byte[]>(added);
+		if(entries.size() == saved)
+			return;
+
+		ModelPlayerAPIEnhancerClassVisitor.info("served %d enhanced classes from its cache and enhanced %d classes that were not cached", hits.get(), misses.get());
+		if(entries.isEmpty())
+		{
+			saved = 0;
+			return;
+		}
+
+		try
+		{
+			File temporary = null;
+			RandomAccessFile access = new RandomAccessFile(file, "rw");
+			try
+			{
+				FileChannel channel = access.getChannel();
+				FileLock lock = channel.lock();
+				try
+				{
+					// another instance might have appended entries since this one opened the file
+					long[][] index = readIndex(channel);
+					if(index != null && channel.size() + sizeOf(entries) <= MaxSize)
+						append(channel, index, channel.size() - FooterSize - index[0].length * (long)IndexEntrySize, entries);
+					else
+						temporary = rewrite(entries);
+				}
+				finally
+				{
+					lock.release();
+				}
+			}
+			finally
+			{
+				access.close();
+			}
+
+			// never truncated in place, other instances might still have the old file mapped, and some systems don't
+			// allow replacing a mapped file at all, so a rewrite of a file this instance has mapped waits for the next start
+			if(temporary != null && !(mapped == null && replace(temporary, file)) && !replace(temporary, pending))
+			{
+				temporary.delete();
+				throw new IOException("could not replace '" + pending + "'");
+			}
+			saved = entries.size();
+		}
+		catch(IOException ioe)
+		{
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer could not save its class cache to '%s': %s", file, ioe);
+		}
+	}
+
+	private static boolean replace(File source, File target)
+	{
+		return source.renameTo(target) || (target.delete() && source.renameTo(target));
+	}
+
+	private void open()
+	{
+		try
+		{
+			RandomAccessFile access = new RandomAccessFile(file, "r");
+			try
+			{
+				FileChannel channel = access.getChannel();
+				FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+				try
+				{
+					long[][] index = readIndex(channel);
+					if(index == null)
+						return;
+
+					keys = index[0];
+					offsets = index[1];
+					lengths = new int[index[2].length];
+					for(int i = 0; i < lengths.length; i++)
+						lengths[i] = (int)index[2][i];
+					mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				}
+				finally
+				{
+					lock.release();
+				}
+			}
+			finally
+			{
+				access.close();
+			}
+		}
+		catch(IOException ioe)
+		{
+			keys = new long[0];
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer ignores its unreadable class cache '%s': %s", file, ioe);
+		}
+	}
+
+	private byte[] load(int index)
+	{
+		byte[] result = new byte[lengths[index]];
+		ByteBuffer buffer = mapped.duplicate();
+		buffer.position((int)offsets[index]);
+		buffer.get(result);
+		return result;
+	}
+
+	private long[][] readIndex(FileChannel channel) throws IOException
+	{
+		long size = channel.size();
+		if(size < HeaderSize + FooterSize || size > Integer.MAX_VALUE)
+			return null;
+
+		ByteBuffer header = read(channel, 0, HeaderSize);
+		if(header.getInt() != Magic || header.getLong() != enhancer)
+			return null;
+
+		ByteBuffer footer = read(channel, size - FooterSize, FooterSize);
+		long indexOffset = footer.getLong();
+		int count = footer.getInt();
+		if(footer.getInt() != Magic || count < 0 || count > (size - HeaderSize - FooterSize) / IndexEntrySize || indexOffset < HeaderSize || indexOffset + (long)count * IndexEntrySize + FooterSize != size)
+			return null;
+
+		ByteBuffer index = read(channel, indexOffset, count * IndexEntrySize);
+		long[][] result = new long[][] { new long[count], new long[count], new long[count] };
+		for(int i = 0; i < count; i++)
+		{
+			result[0][i] = index.getLong();
+			result[1][i] = index.getLong();
+			result[2][i] = index.getInt();
+			if(result[1][i] < HeaderSize || result[2][i] < 0 || result[1][i] + result[2][i] > indexOffset)
+				return null;
+		}
+		return result;
+	}
+
+	private File rewrite(Map<Long, byte[]> entries) throws IOException
+	{
+		// only the classes this run used survive, the ones left behind by changed mods are dropped
+		Map<Long, byte[]> kept = new HashMap<Long, byte[]>(entries);
+		for(int i = 0; i < keys.length; i++)
+			if(used.contains(keys[i]) && !kept.containsKey(keys[i]))
+				kept.put(keys[i], load(i));
+
+		File temporary = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		try
+		{
+			RandomAccessFile access = new RandomAccessFile(temporary, "rw");
+			try
+			{
+				FileChannel channel = access.getChannel();
+				ByteBuffer header = ByteBuffer.allocate(HeaderSize);
+				header.putInt(Magic).putLong(enhancer).flip();
+				write(channel, header, 0);
+				append(channel, new long[][] { new long[0], new long[0], new long[0] }, HeaderSize, kept);
+			}
+			finally
+			{
+				access.close();
+			}
+		}
+		catch(IOException ioe)
+		{
+			temporary.delete();
+			throw ioe;
+		}
+		return temporary;
+	}
+
+	private static void append(FileChannel channel, long[][] index, long position, Map<Long, byte[]> added) throws IOException
+	{
+		SortedMap<Long, long[]> entries = new TreeMap<Long, long[]>();
+		for(int i = 0; i < index[0].length; i++)
+			entries.put(index[0][i], new long[] { index[1][i], index[2][i] });
+
+		for(Map.Entry<Long, byte[]> entry : added.entrySet())
+			if(!entries.containsKey(entry.getKey()))
+			{
+				byte[] bytes = entry.getValue();
+				write(channel, ByteBuffer.wrap(bytes), position);
+				entries.put(entry.getKey(), new long[] { position, bytes.length });
+				position += bytes.length;
+			}
+
+		ByteBuffer indexBuffer = ByteBuffer.allocate(entries.size() * IndexEntrySize + FooterSize);
+		for(Map.Entry<Long, long[]> entry : entries.entrySet())
+			indexBuffer.putLong(entry.getKey()).putLong(entry.getValue()[0]).putInt((int)entry.getValue()[1]);
+		indexBuffer.putLong(position).putInt(entries.size()).putInt(Magic).flip();
+		write(channel, indexBuffer, position);
+		channel.force(false);
+	}
+
+	private static long sizeOf(Map<Long, byte[]> entries)
+	{
+		long size = entries.size() * (long)IndexEntrySize;
+		for(byte[] bytes : entries.values())
+			size += bytes.length;
+		return size;
+	}
+
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while(buffer.hasRemaining())
+			if(channel.read(buffer, position + buffer.position()) < 0)
+				throw new EOFException();
+		buffer.flip();
+		return buffer;
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+	{
+		while(buffer.hasRemaining())
+			position += channel.write(buffer, position);
+	}
+}
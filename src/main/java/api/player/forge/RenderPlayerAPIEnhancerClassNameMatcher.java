@@ -0,0 +1,306 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.forge;
+
+import java.util.*;
+import java.util.regex.*;
+
+import org.apache.logging.log4j.*;
+
+import api.player.model.*;
+
+public class RenderPlayerAPIEnhancerClassNameMatcher
+{
+	public static final int CanonicalClassName = 0;
+	public static final int CanonicalClassNamePattern = 1;
+	public static final int CanonicalClassNamePrefix = 2;
+	public static final int CanonicalClassNameGlob = 3;
+	public static final int CanonicalClassNameExclusion = 4;
+
+	public static class Rule
+	{
+		public final int kind;
+		public final String text;
+
+		private Rule(int kind, String text)
+		{
+			this.kind = kind;
+			this.text = text;
+		}
+	}
+
+	private static class Node
+	{
+		private char[] keys = new char[0];
+		private Node[] children = new Node[0];
+		private Rule exact;
+		private Rule include;
+		private Rule exclude;
+		private Rule[] globs;
+
+		private Node get(char key)
+		{
+			int index = Arrays.binarySearch(keys, key);
+			return index >= 0 ? children[index] : null;
+		}
+
+		private Node getOrAdd(char key)
+		{
+			int index = Arrays.binarySearch(keys, key);
+			if(index >= 0)
+				return children[index];
+
+			index = -index - 1;
+			char[] newKeys = new char[keys.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, index);
+			System.arraycopy(children, 0, newChildren, 0, index);
+			System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+			System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+			newKeys[index] = key;
+			newChildren[index] = new Node();
+			keys = newKeys;
+			children = newChildren;
+			return newChildren[index];
+		}
+	}
+
+	private final Node root;
+	private final Pattern combinedPattern;
+	private final int[] combinedGroups;
+	private final Rule[] combinedRules;
+	private final Pattern[] separatePatterns;
+	private final Rule[] separateRules;
+	private final ThreadLocal<Matcher> combinedMatcher;
+
+	public RenderPlayerAPIEnhancerClassNameMatcher(Collection<String> canonicalClassNames, Collection<String> canonicalClassNamePatterns)
+	{
+		root = new Node();
+		for(String canonicalClassName : canonicalClassNames)
+			add(canonicalClassName);
+
+		StringBuilder combined = new StringBuilder();
+		List<Integer> groups = new ArrayList<Integer>();
+		List<Pattern> patterns = new ArrayList<Pattern>();
+		List<Rule> rules = new ArrayList<Rule>();
+		List<Pattern> separate = new ArrayList<Pattern>();
+		List<Rule> separateRuleList = new ArrayList<Rule>();
+		int groupCount = 0;
+
+		for(String canonicalClassNamePattern : canonicalClassNamePatterns)
+		{
+			Pattern pattern;
+			try
+			{
+				pattern = Pattern.compile(canonicalClassNamePattern);
+			}
+			catch(PatternSyntaxException pse)
+			{
+				ModelPlayerAPIEnhancerClassVisitor.log(Level.ERROR, "Render Player API Enhancer ignores the invalid canonical class name pattern '%s': %s", canonicalClassNamePattern, pse.getDescription());
+				continue;
+			}
+
+			Rule rule = new Rule(CanonicalClassNamePattern, canonicalClassNamePattern);
+			if(requiresSeparateMatching(canonicalClassNamePattern))
+			{
+				// back references, named groups, quotes and comments don't survive being embedded into the alternation
+				separate.add(pattern);
+				separateRuleList.add(rule);
+				continue;
+			}
+
+			if(combined.length() > 0)
+				combined.append('|');
+			combined.append('(').append(canonicalClassNamePattern).append(')');
+
+			groups.add(++groupCount);
+			patterns.add(pattern);
+			rules.add(rule);
+			groupCount += pattern.matcher("").groupCount();
+		}
+
+		Pattern compiled = null;
+		if(!rules.isEmpty())
+			try
+			{
+				compiled = Pattern.compile(combined.toString());
+			}
+			catch(PatternSyntaxException pse)
+			{
+				// patterns that are only invalid next to each other are matched one by one instead
+				ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer matches the canonical class name patterns one by one because they can not be combined: %s", pse.getDescription());
+				separate.addAll(0, patterns);
+				separateRuleList.addAll(0, rules);
+				groups.clear();
+				rules.clear();
+			}
+		combinedPattern = compiled;
+		combinedGroups = new int[groups.size()];
+		for(int i = 0; i < combinedGroups.length; i++)
+			combinedGroups[i] = groups.get(i);
+		combinedRules = rules.toArray(new Rule[rules.size()]);
+		separatePatterns = separate.toArray(new Pattern[separate.size()]);
+		separateRules = separateRuleList.toArray(new Rule[separateRuleList.size()]);
+
+		combinedMatcher = new ThreadLocal<Matcher>()
+		{
+			@Override
+			protected Matcher initialValue()
+			{
+				return combinedPattern != null ? combinedPattern.matcher("") : null;
+			}
+		};
+	}
+
+	private void add(String canonicalClassName)
+	{
+		boolean exclusion = canonicalClassName.startsWith("-");
+		String text = exclusion ? canonicalClassName.substring(1).trim() : canonicalClassName;
+
+		int wildcardIndex = -1;
+		for(int i = 0; i < text.length() && wildcardIndex < 0; i++)
+			if(text.charAt(i) == '*' || text.charAt(i) == '?')
+				wildcardIndex = i;
+
+		boolean prefix = wildcardIndex == text.length() - 1 && text.endsWith(".*");
+		if(exclusion && !prefix)
+		{
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.ERROR, "Render Player API Enhancer ignores the canonical class name exclusion '%s' because only package exclusions like '-some.package.*' are supported", canonicalClassName);
+			return;
+		}
+
+		Node node = root;
+		int literalLength = wildcardIndex < 0 ? text.length() : wildcardIndex;
+		for(int i = 0; i < literalLength; i++)
+			node = node.getOrAdd(text.charAt(i));
+
+		if(exclusion)
+			node.exclude = new Rule(CanonicalClassNameExclusion, canonicalClassName);
+		else if(prefix)
+			node.include = new Rule(CanonicalClassNamePrefix, canonicalClassName);
+		else if(wildcardIndex >= 0)
+		{
+			Rule[] globs = node.globs == null ? new Rule[1] : Arrays.copyOf(node.globs, node.globs.length + 1);
+			globs[globs.length - 1] = new Rule(CanonicalClassNameGlob, canonicalClassName);
+			node.globs = globs;
+		}
+		else
+			node.exact = new Rule(CanonicalClassName, canonicalClassName);
+	}
+
+	public Rule match(String transformedName)
+	{
+		Rule rule = null;
+		Node node = root;
+		int length = transformedName.length();
+		for(int i = 0; node != null; i++)
+		{
+			// the most specific rule on the path wins, an exclusion over an inclusion of the same package
+			if(node.include != null)
+				rule = node.include;
+			if(node.exclude != null)
+				rule = node.exclude;
+			if(node.globs != null)
+				for(Rule glob : node.globs)
+					if(matchesGlob(glob.text, transformedName))
+						rule = glob;
+
+			if(i == length)
+			{
+				if(node.exact != null)
+					rule = node.exact;
+				break;
+			}
+
+			// nothing more specific below an excluded package
+			if(rule != null && rule.kind == CanonicalClassNameExclusion && node.keys.length == 0)
+				return rule;
+
+			node = node.get(transformedName.charAt(i));
+		}
+
+		if(rule != null)
+			return rule;
+
+		if(combinedPattern != null)
+		{
+			Matcher matcher = combinedMatcher.get().reset(transformedName);
+			if(matcher.matches())
+				for(int i = 0; i < combinedGroups.length && rule == null; i++)
+					if(matcher.start(combinedGroups[i]) >= 0)
+						rule = combinedRules[i];
+			matcher.reset("");
+			if(rule != null)
+				return rule;
+		}
+
+		for(int i = 0; i < separatePatterns.length; i++)
+			if(separatePatterns[i].matcher(transformedName).matches())
+				return separateRules[i];
+
+		return null;
+	}
+
+	private static boolean matchesGlob(String glob, String name)
+	{
+		int g = 0, n = 0, starG = -1, starN = -1;
+		while(n < name.length())
+		{
+			char c = g < glob.length() ? glob.charAt(g) : 0;
+			if(c == '*')
+			{
+				starG = g++;
+				starN = n;
+			}
+			else if(g < glob.length() && (c == '?' || c == name.charAt(n)))
+			{
+				g++;
+				n++;
+			}
+			else if(starG >= 0)
+			{
+				g = starG + 1;
+				n = ++starN;
+			}
+			else
+				return false;
+		}
+		while(g < glob.length() && glob.charAt(g) == '*')
+			g++;
+		return g == glob.length();
+	}
+
+	private static boolean requiresSeparateMatching(String pattern)
+	{
+		if(pattern.indexOf('#') >= 0)
+			return true;
+		for(int i = 0; i < pattern.length() - 1; i++)
+			if(pattern.charAt(i) == '\\')
+			{
+				char next = pattern.charAt(i + 1);
+				if((next >= '1' && next <= '9') || next == 'k' || next == 'Q')
+					return true;
+				i++;
+			}
+			else if(pattern.startsWith("(?<", i) && i + 3 < pattern.length() && pattern.charAt(i + 3) != '=' && pattern.charAt(i + 3) != '!')
+				return true;
+		return false;
+	}
+}
@@ -21,7 +21,12 @@ package api.player.forge;
 
 import java.util.*;
 import com.google.common.eventbus.*;
+import net.minecraftforge.common.*;
 import net.minecraftforge.fml.common.*;
+import net.minecraftforge.fml.common.event.*;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.*;
+import api.player.model.*;
 
 public class RenderPlayerAPIEnhancerContainer extends DummyModContainer
 {
@@ -33,9 +38,48 @@ public class RenderPlayerAPIEnhancerContainer extends DummyModContainer
 	@Override
 	public boolean registerBus(EventBus bus, LoadController controller)
 	{
+		bus.register(this);
 		return true;
 	}
 
+	@Subscribe
+	public void onInit(FMLInitializationEvent event)
+	{
+		if(RenderPlayerAPIEnhancerPlugin.getterCache)
+			MinecraftForge.EVENT_BUS.register(this);
+	}
+
+	@SubscribeEvent
+	public void onRenderTick(TickEvent.RenderTickEvent event)
+	{
+		if(event.phase == TickEvent.Phase.START)
+			ModelPlayerAPIEnhancerFrameCounter.next();
+	}
+
+	@Subscribe
+	public void onLoadComplete(FMLLoadCompleteEvent event)
+	{
+		if(RenderPlayerAPIEnhancerPlugin.rejectionFilter != null)
+			RenderPlayerAPIEnhancerPlugin.rejectionFilter.save();
+		if(RenderPlayerAPIEnhancerPlugin.classCache != null)
+			RenderPlayerAPIEnhancerPlugin.classCache.save();
+		if(RenderPlayerAPIEnhancerPlugin.profile != null)
+			RenderPlayerAPIEnhancerPlugin.profile.save();
+		if(RenderPlayerAPIEnhancerPlugin.overlay != null)
+		{
+			RenderPlayerAPIEnhancerPlugin.overlay.close();
+			RenderPlayerAPIEnhancerPlugin.overlay = null;
+		}
+		if(RenderPlayerAPIEnhancerPlugin.allocationReport != null)
+			RenderPlayerAPIEnhancerPlugin.saveAllocationReport();
+		if(RenderPlayerAPIEnhancerPlugin.renderProfile != null)
+			RenderPlayerAPIEnhancerPlugin.saveRenderProfile();
+		if(RenderPlayerAPIEnhancerPlugin.statistics != null)
+			RenderPlayerAPIEnhancerPlugin.saveStatistics();
+		if(RenderPlayerAPIEnhancerPlugin.trace != null)
+			RenderPlayerAPIEnhancerPlugin.saveTrace();
+	}
+
 	private static ModMetadata createMetadata()
 	{
 		ModMetadata meta = new ModMetadata();
@@ -0,0 +1,131 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.forge;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+public final class RenderPlayerAPIEnhancerFingerprints
+{
+	private static final long Offset = 0xcbf29ce484222325L;
+	private static final long Prime = 0x100000001b3L;
+
+	// the options that change which classes are enhanced and how, the optional probes never reach an overlay
+	private static final String[] EnhancementOptions = new String[] { "autodiscovery", "superclassindex", "rotationguard", "gettercache", "allocationhoisting" };
+
+	private static final ThreadLocal<CRC32> crc = new ThreadLocal<CRC32>()
+	{
+		@Override
+		protected CRC32 initialValue()
+		{
+			return new CRC32();
+		}
+	};
+
+	private RenderPlayerAPIEnhancerFingerprints()
+	{
+	}
+
+	public static long ofClass(String name, byte[] bytes)
+	{
+		CRC32 checksum = crc.get();
+		checksum.reset();
+		checksum.update(bytes, 0, bytes.length);
+		return ((long)(name.hashCode() * 31 + bytes.length) << 32) | checksum.getValue();
+	}
+
+	public static long ofBytes(byte[] bytes)
+	{
+		long hash = Offset;
+		for(int i = 0; i < bytes.length; i++)
+			hash = (hash ^ (bytes[i] & 0xFF)) * Prime;
+		return update(hash, bytes.length);
+	}
+
+	public static long ofEnhancer()
+	{
+		long hash = update(Offset, RenderPlayerAPIEnhancerPlugin.Version);
+		return update(hash, String.valueOf(RenderPlayerAPIEnhancerPlugin.isObfuscated));
+	}
+
+	public static long ofConfiguration(File mcLocation, Collection<?>... settings)
+	{
+		return updateWithMods(ofSettings(settings), new File(mcLocation, "mods"), 0);
+	}
+
+	public static long ofEnhancement(Collection<String> canonicalClassNames, Collection<String> canonicalClassNamePatterns, Collection<String> options)
+	{
+		List<String> enhancementOptions = new ArrayList<String>();
+		for(String option : options)
+			for(String enhancementOption : EnhancementOptions)
+				if(option.startsWith(enhancementOption))
+				{
+					enhancementOptions.add(option);
+					break;
+				}
+		return ofSettings(canonicalClassNames, canonicalClassNamePatterns, enhancementOptions);
+	}
+
+	public static long ofSettings(Collection<?>... settings)
+	{
+		long hash = ofEnhancer();
+		for(Collection<?> setting : settings)
+			for(Object value : new TreeSet<Object>(setting))
+				hash = update(hash, value.toString());
+		return hash;
+	}
+
+	private static long updateWithMods(long hash, File directory, int depth)
+	{
+		File[] files = directory.listFiles();
+		if(files == null)
+			return hash;
+
+		Arrays.sort(files);
+		for(File file : files)
+			if(file.isDirectory())
+			{
+				if(depth == 0)
+					hash = updateWithMods(hash, file, depth + 1);
+			}
+			else
+			{
+				hash = update(hash, file.getName());
+				hash = update(hash, file.length());
+				hash = update(hash, file.lastModified());
+			}
+		return hash;
+	}
+
+	public static long update(long hash, String value)
+	{
+		for(int i = 0; i < value.length(); i++)
+			hash = (hash ^ value.charAt(i)) * Prime;
+		return (hash ^ 0xFF) * Prime;
+	}
+
+	public static long update(long hash, long value)
+	{
+		for(int i = 0; i < 8; i++, value >>>= 8)
+			hash = (hash ^ (value & 0xFF)) * Prime;
+		return hash;
+	}
+}
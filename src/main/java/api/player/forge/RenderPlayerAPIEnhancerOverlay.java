@@ -0,0 +1,145 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.forge;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.zip.*;
+
+import org.apache.logging.log4j.*;
+
+import api.player.model.*;
+
+// a jar of classes enhanced ahead of time together with the fingerprints of the original classes they were made from
+// and of the settings they were enhanced with
+public class RenderPlayerAPIEnhancerOverlay
+{
+	public static final String FileName = "render_player_api_Enhancer_overlay.jar";
+	public static final String IndexName = "META-INF/render_player_api_Enhancer_overlay.idx";
+	public static final int Magic = 0x5250414F;
+
+	private final File file;
+	private final Map<String, Long> keys;
+	private final AtomicInteger served;
+	private final AtomicInteger stale;
+	private volatile ZipFile zip;
+
+	public RenderPlayerAPIEnhancerOverlay(File file, long settings)
+	{
+		this.file = file;
+		this.keys = new HashMap<String, Long>();
+		this.served = new AtomicInteger();
+		this.stale = new AtomicInteger();
+
+		try
+		{
+			zip = new ZipFile(file);
+			ZipEntry index = zip.getEntry(IndexName);
+			if(index == null)
+				throw new IOException("missing " + IndexName);
+
+			DataInputStream in = new DataInputStream(new BufferedInputStream(zip.getInputStream(index)));
+			try
+			{
+				if(in.readInt() != Magic || in.readLong() != settings)
+				{
+					ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer ignores the overlay '%s' because it was built by another version, for another environment or with other class names or options", file);
+					close();
+					return;
+				}
+
+				int count = in.readInt();
+				for(int i = 0; i < count; i++)
+					keys.put(in.readUTF(), in.readLong());
+			}
+			finally
+			{
+				in.close();
+			}
+			ModelPlayerAPIEnhancerClassVisitor.info("found %d classes enhanced ahead of time in the overlay '%s'", keys.size(), file);
+		}
+		catch(IOException ioe)
+		{
+			keys.clear();
+			close();
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer ignores its unreadable overlay '%s': %s", file, ioe);
+		}
+	}
+
+	public byte[] get(String transformedName, byte[] bytes)
+	{
+		Long key = keys.get(transformedName);
+		if(key == null)
+			return null;
+
+		// the overlay only applies to exactly the class it was built from, not to one the transformers before changed
+		if(key.longValue() != RenderPlayerAPIEnhancerFingerprints.ofBytes(bytes))
+		{
+			stale.incrementAndGet();
+			return null;
+		}
+
+		try
+		{
+			ZipFile zip = this.zip;
+			ZipEntry entry = zip == null ? null : zip.getEntry(transformedName.replace('.', '/') + ".class");
+			if(entry == null)
+				return null;
+
+			InputStream in = zip.getInputStream(entry);
+			try
+			{
+				byte[] result = new byte[(int)entry.getSize()];
+				new DataInputStream(in).readFully(result);
+				served.incrementAndGet();
+				return result;
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		catch(IOException ioe)
+		{
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer could not read class '%s' from its overlay '%s': %s", transformedName, file, ioe);
+			return null;
+		}
+	}
+
+	// classes loaded after this are enhanced the usual way
+	public void close()
+	{
+		ZipFile zip = this.zip;
+		if(zip == null)
+			return;
+		this.zip = null;
+
+		if(!keys.isEmpty())
+			ModelPlayerAPIEnhancerClassVisitor.info("served %d classes from its overlay and ignored %d overlay classes whose originals changed", served.get(), stale.get());
+		try
+		{
+			zip.close();
+		}
+		catch(IOException ioe)
+		{
+		}
+	}
+}
@@ -0,0 +1,256 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.forge;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.jar.*;
+import java.util.zip.*;
+
+import org.apache.logging.log4j.*;
+
+import api.player.model.*;
+
+// builds the overlay for a whole game directory so the players of a pack don't have to enhance the classes themselves:
+// java api.player.forge.RenderPlayerAPIEnhancerOverlayBuilder [--deobfuscated] <minecraft directory> [<overlay jar>]
+// the classes are enhanced as they are in the mod files, the ones other transformers change before the enhancer at
+// runtime don't match their overlay entries then and are enhanced the usual way
+public class RenderPlayerAPIEnhancerOverlayBuilder
+{
+	private static class Enhanced
+	{
+		private final File source;
+		private final long key;
+		private final byte[] bytes;
+
+		private Enhanced(File source, long key, byte[] bytes)
+		{
+			this.source = source;
+			this.key = key;
+			this.bytes = bytes;
+		}
+	}
+
+	private static class JarTask extends RecursiveAction
+	{
+		private final File file;
+		private final ConcurrentMap<String, Enhanced> result;
+
+		private JarTask(File file, ConcurrentMap<String, Enhanced> result)
+		{
+			this.file = file;
+			this.result = result;
+		}
+
+		@Override
+		protected void compute()
+		{
+			try
+			{
+				ZipFile zip = new ZipFile(file);
+				try
+				{
+					List<EntryTask> tasks = new ArrayList<EntryTask>();
+					Enumeration<? extends ZipEntry> entries = zip.entries();
+					while(entries.hasMoreElements())
+					{
+						ZipEntry entry = entries.nextElement();
+						String entryName = entry.getName();
+						if(entry.isDirectory() || !entryName.endsWith(".class") || entryName.startsWith("META-INF/"))
+							continue;
+
+						// entries that can't be candidates are never inflated
+						String transformedName = entryName.substring(0, entryName.length() - 6).replace('/', '.');
+						if(RenderPlayerAPIEnhancerTransformer.mightBeCandidate(transformedName))
+							tasks.add(new EntryTask(file, zip, entry, transformedName, result));
+					}
+					invokeAll(tasks);
+				}
+				finally
+				{
+					zip.close();
+				}
+			}
+			catch(IOException ioe)
+			{
+				ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer could not read the mod file '%s': %s", file, ioe);
+			}
+		}
+	}
+
+	private static class EntryTask extends RecursiveAction
+	{
+		private final File file;
+		private final ZipFile zip;
+		private final ZipEntry entry;
+		private final String transformedName;
+		private final ConcurrentMap<String, Enhanced> result;
+
+		private EntryTask(File file, ZipFile zip, ZipEntry entry, String transformedName, ConcurrentMap<String, Enhanced> result)
+		{
+			this.file = file;
+			this.zip = zip;
+			this.entry = entry;
+			this.transformedName = transformedName;
+			this.result = result;
+		}
+
+		@Override
+		protected void compute()
+		{
+			byte[] bytes;
+			try
+			{
+				bytes = read(zip, entry);
+			}
+			catch(IOException ioe)
+			{
+				ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer could not read class '%s' from the mod file '%s': %s", transformedName, file, ioe);
+				return;
+			}
+
+			byte[] enhanced = transformer.transform(transformedName, transformedName, bytes);
+			if(enhanced == bytes)
+				return;
+
+			Enhanced previous = result.putIfAbsent(transformedName, new Enhanced(file, RenderPlayerAPIEnhancerFingerprints.ofBytes(bytes), enhanced));
+			if(previous != null)
+				ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer keeps class '%s' from the mod file '%s' and ignores the one in '%s'", transformedName, previous.source, file);
+		}
+	}
+
+	private static final RenderPlayerAPIEnhancerTransformer transformer = new RenderPlayerAPIEnhancerTransformer();
+
+	public static void main(String[] args)
+	{
+		boolean isObfuscated = true;
+		List<String> files = new ArrayList<String>();
+		for(String arg : args)
+			if(arg.equals("--deobfuscated"))
+				isObfuscated = false;
+			else
+				files.add(arg);
+
+		if(files.isEmpty() || files.size() > 2)
+		{
+			System.err.println("Usage: java " + RenderPlayerAPIEnhancerOverlayBuilder.class.getName() + " [--deobfuscated] <minecraft directory> [<overlay jar>]");
+			System.exit(1);
+		}
+
+		File mcLocation = new File(files.get(0));
+		File output = files.size() > 1 ? new File(files.get(1)) : new File(mcLocation, RenderPlayerAPIEnhancerOverlay.FileName);
+		try
+		{
+			build(mcLocation, output, isObfuscated);
+		}
+		catch(IOException ioe)
+		{
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.ERROR, "Render Player API Enhancer could not write the overlay '%s': %s", output, ioe);
+			System.exit(1);
+		}
+	}
+
+	public static void build(File mcLocation, File output, boolean isObfuscated) throws IOException
+	{
+		RenderPlayerAPIEnhancerPlugin.isObfuscated = isObfuscated;
+		RenderPlayerAPIEnhancerPlugin.configure(mcLocation);
+		if(RenderPlayerAPIEnhancerPlugin.superClassIndexFile != null)
+			RenderPlayerAPIEnhancerPlugin.buildSuperClassIndex();
+
+		List<JarTask> tasks = new ArrayList<JarTask>();
+		ConcurrentMap<String, Enhanced> result = new ConcurrentHashMap<String, Enhanced>();
+		for(File file : RenderPlayerAPIEnhancerSuperClassIndex.collectModFiles(mcLocation))
+			tasks.add(new JarTask(file, result));
+
+		ForkJoinPool pool = new ForkJoinPool();
+		try
+		{
+			for(JarTask task : tasks)
+				pool.execute(task);
+			for(JarTask task : tasks)
+				task.join();
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+
+		long settings = RenderPlayerAPIEnhancerFingerprints.ofEnhancement(RenderPlayerAPIEnhancerPlugin.canonicalClassNames, RenderPlayerAPIEnhancerPlugin.canonicalClassNamePatterns, RenderPlayerAPIEnhancerPlugin.options);
+		write(output, settings, new TreeMap<String, Enhanced>(result));
+		ModelPlayerAPIEnhancerClassVisitor.info("wrote %d enhanced classes of %d mod files to the overlay '%s'", result.size(), tasks.size(), output);
+	}
+
+	private static void write(File file, long settings, SortedMap<String, Enhanced> classes) throws IOException
+	{
+		File temporary = new File(file.getPath() + ".tmp");
+		JarOutputStream out = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+		try
+		{
+			out.putNextEntry(new JarEntry(RenderPlayerAPIEnhancerOverlay.IndexName));
+			DataOutputStream index = new DataOutputStream(out);
+			index.writeInt(RenderPlayerAPIEnhancerOverlay.Magic);
+			index.writeLong(settings);
+			index.writeInt(classes.size());
+			for(Map.Entry<String, Enhanced> entry : classes.entrySet())
+			{
+				index.writeUTF(entry.getKey());
+				index.writeLong(entry.getValue().key);
+			}
+			index.flush();
+			out.closeEntry();
+
+			for(Map.Entry<String, Enhanced> entry : classes.entrySet())
+			{
+				out.putNextEntry(new JarEntry(entry.getKey().replace('.', '/') + ".class"));
+				out.write(entry.getValue().bytes);
+				out.closeEntry();
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+
+		if(!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file)))
+		{
+			temporary.delete();
+			throw new IOException("could not replace " + file);
+		}
+	}
+
+	private static byte[] read(ZipFile zip, ZipEntry entry) throws IOException
+	{
+		InputStream in = zip.getInputStream(entry);
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream(entry.getSize() > 0 ? (int)entry.getSize() : 4096);
+			byte[] buffer = new byte[4096];
+			int read;
+			while((read = in.read(buffer)) > 0)
+				out.write(buffer, 0, read);
+			return out.toByteArray();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+}
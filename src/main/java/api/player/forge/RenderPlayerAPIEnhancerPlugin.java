@@ -21,6 +21,9 @@ package api.player.forge;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+
+import javax.management.*;
 
 import org.apache.logging.log4j.*;
 
@@ -33,10 +36,35 @@ public class RenderPlayerAPIEnhancerPlugin implements IFMLLoadingPlugin
 {
 	public static String Version = "@VERSION@";
 
+	private static final long RenderProfileInterval = 60000;
+
 	public static boolean isObfuscated;
 	public static boolean hasRenderPlayerAPI = false;
 	public static Set<String> canonicalClassNames;
 	public static Set<String> canonicalClassNamePatterns;
+	public static RenderPlayerAPIEnhancerClassNameMatcher classNameMatcher;
+	public static Set<String> options;
+	public static boolean autoDiscovery;
+	public static boolean constantPoolPatching;
+	public static boolean rotationGuard;
+	public static Set<String> rotationGuardExclusions;
+	public static boolean getterCache;
+	public static boolean allocationHoisting;
+	public static Set<String> allocationHoistingExclusions;
+	public static File allocationReport;
+	public static File renderProfile;
+	public static File allocationRates;
+	public static boolean flightRecorderRenderCalls;
+	public static RenderPlayerAPIEnhancerStatistics statistics;
+	private static File statisticsFile;
+	public static File trace;
+	public static RenderPlayerAPIEnhancerRejectionFilter rejectionFilter;
+	public static RenderPlayerAPIEnhancerClassCache classCache;
+	public static File superClassIndexFile;
+	private static volatile RenderPlayerAPIEnhancerSuperClassIndex superClassIndex;
+	private static Set<String> superClassIndexMisses;
+	public static volatile RenderPlayerAPIEnhancerOverlay overlay;
+	public static RenderPlayerAPIEnhancerProfile profile;
 
 	private static final String[] defaultClassNamePatterns = new String[]
 	{
@@ -48,7 +76,70 @@ public class RenderPlayerAPIEnhancerPlugin implements IFMLLoadingPlugin
 		"thaumic.tinkerer.client.model.kami.ModelWings",
 		"thaumcraft.client.renderers.models.gear.ModelRobe",
 		"thaumcraft.client.renderers.models.gear.ModelHoverHarness",
-		"riskyken.armourersWorkshop.client.model.equipmet.AbstractModelCustomEquipment"
+		"riskyken.armourersWorkshop.client.model.equipmet.AbstractModelCustomEquipment",
+		"-net.minecraft.*",
+		"-net.minecraftforge.*",
+		"-com.mojang.*",
+		"-com.google.*",
+		"-org.apache.*",
+		"-org.lwjgl.*",
+		"-org.objectweb.*",
+		"-io.netty.*",
+		"-it.unimi.*",
+		"-gnu.trove.*",
+		"-paulscode.*",
+		"-scala.*",
+		"-kotlin.*",
+		"-java.*",
+		"-javax.*",
+		"-sun.*",
+		"-com.sun.*"
+	};
+
+	private static final String[] classNameDescriptions = new String[]
+	{
+		"'some.package.*' for all classes in a package and its sub packages",
+		"'*' and '?' as wildcards for any text respectively any single character",
+		"'-some.package.*' to exclude a package and its sub packages, also when the same package is included",
+	};
+
+	private static final String[] defaultOptions = new String[]
+	{
+		"rejectionfilter",
+		"classcache",
+	};
+
+	private static final String[] optionDescriptions = new String[]
+	{
+		"'autodiscovery' to consider all classes that directly extend 'net.minecraft.client.model.ModelBiped' and declare model parts or render methods,",
+		"  the canonical class names and patterns then only add classes and exclude packages",
+		"'rejectionfilter' to remember candidate classes that turned out not to be armor models and skip them on later starts",
+		"'classcache' to store enhanced classes and reuse them on later starts as long as the original classes don't change",
+		"'superclassindex' to index the mod files and also enhance candidate classes that extend the model biped class through other classes",
+		"'preenhancement' to enhance the classes enhanced during the previous start on worker threads while the game is loading",
+		"'constantpoolpatching' to enhance classes by patching their constant pools instead of rewriting them with ASM where possible",
+		"'rotationguard' to skip setting the rotation angles of armor models again for the same entity with the same angles,",
+		"  'rotationguard!=some.package.SomeClass' to not do so for a single class",
+		"'allocationreport' to list the allocation sites in the per frame methods of enhanced classes in 'render_player_api_Enhancer_allocations.txt',",
+		"  classes are not served from the class cache, the pre-enhancement or an overlay while this option is set",
+		"'gettercache' to remember the results of the local arm side, main hand and texture offset getters of armor models for the rest of the frame",
+		"'renderprofiling' to measure the time per call of the local render, rotation angle and living animation methods of armor models",
+		"  and rank them in 'render_player_api_Enhancer_render_profile.txt' every minute, classes are not served from an overlay while this option is set",
+		"'allocationsampling' to measure the bytes allocated per call of the local render, rotation angle and living animation methods of armor models",
+		"  for one in every 16 calls and rank them in 'render_player_api_Enhancer_allocation_rates.txt' when the game exits,",
+		"  'allocationsampling=4' to sample one in every 4 calls instead, classes are not served from an overlay while this option is set",
+		"'allocationhoisting' to reuse the primitive arrays of constant size above 64 elements the local render and rotation angle methods of armor models",
+		"  create on every call, which saves garbage but not time as the arrays are cleared instead,",
+		"  'allocationhoisting!=some.package.SomeClass' to not do so for a single class",
+		"'summarylogging' to log one line per enhanced class instead of one line per candidate class, constructor, method and super call",
+		"'statistics' to count and time what the transformer does, available through JMX as 'api.player.forge:type=RenderPlayerAPIEnhancer'",
+		"  and saved to 'render_player_api_Enhancer_statistics.txt' when the game finished loading",
+		"'tracing' to record the matching, scanning and rewriting of every candidate class",
+		"  and save the timeline to 'render_player_api_Enhancer_trace.json' for the Chrome trace viewer when the game finished loading",
+		"'flightrecorder' to add JDK Flight Recorder events for every class enhancement where the virtual machine supports them,",
+		"  'flightrecorderrendercalls' to also add events for one in every 16 calls of the local render and rotation angle methods of armor models,",
+		"  'flightrecorderrendercalls=4' to record one in every 4 calls instead, classes are not served from an overlay while this option is set",
+		"'asynclogging' to write the log messages of the enhancer on a background thread instead of the class loading thread",
 	};
 
 	public RenderPlayerAPIEnhancerPlugin()
@@ -110,11 +201,275 @@ public class RenderPlayerAPIEnhancerPlugin implements IFMLLoadingPlugin
 		if(hasRenderPlayerAPI)
 		{
 			File mcLocation = (File)data.get("mcLocation");
-			canonicalClassNames = HandleOptions(mcLocation, "render_player_api_Enhancer_classnames.txt", defaultClassNames, "canonical class name");
-			canonicalClassNamePatterns = HandleOptions(mcLocation, "render_player_api_Enhancer_classnamepatterns.txt", defaultClassNamePatterns, "canonical class name pattern");
+			configure(mcLocation);
+			ModelPlayerAPIEnhancerClassVisitor.summaryLogging = options.contains("summarylogging");
+			if(options.contains("asynclogging"))
+				ModelPlayerAPIEnhancerClassVisitor.startAsynchronousLogging();
+
+			if(options.contains("tracing"))
+			{
+				trace = new File(mcLocation, "render_player_api_Enhancer_trace.json");
+				ModelPlayerAPIEnhancerTrace.enabled = true;
+			}
+
+			if(options.contains("flightrecorder") || options.contains("flightrecorderrendercalls"))
+			{
+				if(ModelPlayerAPIEnhancerFlightRecorder.isSupported())
+					try
+					{
+						ModelPlayerAPIEnhancerFlightRecorderEvents.register();
+						flightRecorderRenderCalls = options.contains("flightrecorderrendercalls");
+					}
+					catch(ReflectiveOperationException roe)
+					{
+						ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer could not register its flight recorder events: %s", roe);
+					}
+					catch(LinkageError le)
+					{
+						ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer could not register its flight recorder events: %s", le);
+					}
+				else
+					log(Level.WARN, "Render Player API Enhancer can not record flight recorder events because this virtual machine does not provide 'jdk.jfr'");
+			}
+
+			if(options.contains("statistics"))
+			{
+				statistics = new RenderPlayerAPIEnhancerStatistics();
+				statisticsFile = new File(mcLocation, "render_player_api_Enhancer_statistics.txt");
+				try
+				{
+					statistics.register();
+				}
+				catch(JMException jme)
+				{
+					ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer could not register its statistics as '%s': %s", RenderPlayerAPIEnhancerStatistics.Name, jme);
+				}
+			}
+
+			if(superClassIndexFile != null)
+				startSuperClassIndex();
+
+			long configuration = RenderPlayerAPIEnhancerFingerprints.ofConfiguration(mcLocation, canonicalClassNames, canonicalClassNamePatterns, options);
+			if(options.contains("rejectionfilter"))
+				rejectionFilter = new RenderPlayerAPIEnhancerRejectionFilter(new File(mcLocation, "render_player_api_Enhancer_rejected.bin"), configuration);
+
+			if(options.contains("renderprofiling"))
+			{
+				renderProfile = new File(mcLocation, "render_player_api_Enhancer_render_profile.txt");
+				Thread saver = new Thread("Render Player API Enhancer Render Profile")
+				{
+					@Override
+					public void run()
+					{
+						try
+						{
+							while(true)
+							{
+								Thread.sleep(RenderProfileInterval);
+								saveRenderProfile();
+							}
+						}
+						catch(InterruptedException ie)
+						{
+						}
+					}
+				};
+				saver.setDaemon(true);
+				saver.start();
+				Runtime.getRuntime().addShutdownHook(new Thread("Render Player API Enhancer Render Profile Shutdown")
+				{
+					@Override
+					public void run()
+					{
+						saveRenderProfile();
+					}
+				});
+			}
+
+			if(options.contains("allocationsampling"))
+			{
+				if(ModelPlayerAPIEnhancerAllocationSampler.isSupported())
+				{
+					allocationRates = new File(mcLocation, "render_player_api_Enhancer_allocation_rates.txt");
+					Runtime.getRuntime().addShutdownHook(new Thread("Render Player API Enhancer Allocation Rates")
+					{
+						@Override
+						public void run()
+						{
+							saveAllocationRates();
+						}
+					});
+				}
+				else
+					log(Level.WARN, "Render Player API Enhancer can not sample allocations because this virtual machine does not count the bytes allocated per thread");
+			}
+
+			// only classes that actually get enhanced can be reported
+			if(options.contains("allocationreport"))
+			{
+				allocationReport = new File(mcLocation, "render_player_api_Enhancer_allocations.txt");
+				Runtime.getRuntime().addShutdownHook(new Thread("Render Player API Enhancer Allocation Report")
+				{
+					@Override
+					public void run()
+					{
+						saveAllocationReport();
+					}
+				});
+				return;
+			}
+
+			if(options.contains("classcache"))
+				classCache = new RenderPlayerAPIEnhancerClassCache(new File(mcLocation, "render_player_api_Enhancer_cache.bin"), RenderPlayerAPIEnhancerFingerprints.ofEnhancer());
+			if(options.contains("preenhancement"))
+				profile = new RenderPlayerAPIEnhancerProfile(new File(mcLocation, "render_player_api_Enhancer_profile.bin"), RenderPlayerAPIEnhancerFingerprints.ofSettings(canonicalClassNames, canonicalClassNamePatterns, options));
+
+			// the overlay only depends on the options that change the enhancement, so its classes might not be probed
+			File overlayFile = new File(mcLocation, RenderPlayerAPIEnhancerOverlay.FileName);
+			if(overlayFile.exists() && renderProfile == null && allocationRates == null && !flightRecorderRenderCalls)
+				overlay = new RenderPlayerAPIEnhancerOverlay(overlayFile, RenderPlayerAPIEnhancerFingerprints.ofEnhancement(canonicalClassNames, canonicalClassNamePatterns, options));
+		}
+	}
+
+	public static void saveAllocationReport()
+	{
+		try
+		{
+			ModelPlayerAPIEnhancerAllocationReport.save(allocationReport);
+		}
+		catch(IOException ioe)
+		{
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer could not save the allocation report to '%s': %s", allocationReport, ioe);
+		}
+	}
+
+	public static void saveTrace()
+	{
+		try
+		{
+			ModelPlayerAPIEnhancerTrace.save(trace);
+		}
+		catch(IOException ioe)
+		{
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer could not save the trace to '%s': %s", trace, ioe);
+		}
+	}
+
+	public static void saveStatistics()
+	{
+		try
+		{
+			statistics.save(statisticsFile);
+		}
+		catch(IOException ioe)
+		{
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer could not save the statistics to '%s': %s", statisticsFile, ioe);
+		}
+	}
+
+	public static void saveRenderProfile()
+	{
+		try
+		{
+			ModelPlayerAPIEnhancerRenderProfiler.save(renderProfile);
+		}
+		catch(IOException ioe)
+		{
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer could not save the render profile to '%s': %s", renderProfile, ioe);
+		}
+	}
+
+	public static void saveAllocationRates()
+	{
+		try
+		{
+			ModelPlayerAPIEnhancerAllocationSampler.save(allocationRates);
+		}
+		catch(IOException ioe)
+		{
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer could not save the allocation rates to '%s': %s", allocationRates, ioe);
 		}
 	}
 
+	// everything the candidate rules of the transformer depend on
+	public static void configure(File mcLocation)
+	{
+		ModelPlayerAPIEnhancerMappings.get(isObfuscated);
+
+		canonicalClassNames = HandleOptions(mcLocation, "render_player_api_Enhancer_classnames.txt", defaultClassNames, classNameDescriptions, "canonical class name", true);
+		canonicalClassNamePatterns = HandleOptions(mcLocation, "render_player_api_Enhancer_classnamepatterns.txt", defaultClassNamePatterns, new String[0], "canonical class name pattern", false);
+		classNameMatcher = new RenderPlayerAPIEnhancerClassNameMatcher(canonicalClassNames, canonicalClassNamePatterns);
+		options = HandleOptions(mcLocation, "render_player_api_Enhancer_options.txt", defaultOptions, optionDescriptions, "option", false);
+		autoDiscovery = options.contains("autodiscovery");
+		constantPoolPatching = options.contains("constantpoolpatching");
+		rotationGuard = options.contains("rotationguard");
+		rotationGuardExclusions = new HashSet<String>();
+		for(String option : options)
+			if(option.startsWith("rotationguard!="))
+				rotationGuardExclusions.add(option.substring("rotationguard!=".length()).trim());
+		getterCache = options.contains("gettercache");
+		for(String option : options)
+			if(option.startsWith("allocationsampling="))
+				try
+				{
+					ModelPlayerAPIEnhancerAllocationSampler.interval = Math.max(1, Integer.parseInt(option.substring("allocationsampling=".length()).trim()));
+				}
+				catch(NumberFormatException nfe)
+				{
+					ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer ignores the option '%s' because it does not end with a number", option);
+				}
+		for(String option : options)
+			if(option.startsWith("flightrecorderrendercalls="))
+				try
+				{
+					ModelPlayerAPIEnhancerFlightRecorder.interval = Math.max(1, Integer.parseInt(option.substring("flightrecorderrendercalls=".length()).trim()));
+				}
+				catch(NumberFormatException nfe)
+				{
+					ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer ignores the option '%s' because it does not end with a number", option);
+				}
+		allocationHoisting = options.contains("allocationhoisting");
+		allocationHoistingExclusions = new HashSet<String>();
+		for(String option : options)
+			if(option.startsWith("allocationhoisting!="))
+				allocationHoistingExclusions.add(option.substring("allocationhoisting!=".length()).trim());
+		superClassIndex = null;
+		superClassIndexMisses = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		superClassIndexFile = options.contains("superclassindex") ? new File(mcLocation, "render_player_api_Enhancer_superclasses.bin") : null;
+	}
+
+	// indexing scans every mod file, so it runs in the background while the game is loading
+	public static void startSuperClassIndex()
+	{
+		Thread indexer = new Thread("Render Player API Enhancer Super Class Index")
+		{
+			@Override
+			public void run()
+			{
+				buildSuperClassIndex();
+			}
+		};
+		indexer.setDaemon(true);
+		indexer.start();
+	}
+
+	public static void buildSuperClassIndex()
+	{
+		superClassIndex = new RenderPlayerAPIEnhancerSuperClassIndex(superClassIndexFile.getParentFile(), superClassIndexFile, classNameMatcher, autoDiscovery, superClassIndexMisses);
+	}
+
+	// null as long as the index is not ready, the transformer then never waits for it
+	public static RenderPlayerAPIEnhancerSuperClassIndex getSuperClassIndex()
+	{
+		return superClassIndex;
+	}
+
+	// classes transformed before the index was ready were not enhanced through it, so neither can their subclasses be
+	public static void missSuperClassIndex(String transformedName)
+	{
+		superClassIndexMisses.add(transformedName);
+	}
+
 	@Override
 	public String getAccessTransformerClass()
 	{
@@ -127,8 +482,10 @@ public class RenderPlayerAPIEnhancerPlugin implements IFMLLoadingPlugin
 			ModelPlayerAPIEnhancerClassVisitor.log(level, messagePart);
 	}
 
-	private static Set<String> HandleOptions(File mcLocation, String fileName, String[] defaultStrings, String type)
+	private static Set<String> HandleOptions(File mcLocation, String fileName, String[] defaultStrings, String[] descriptions, String type, boolean allowExclusions)
 	{
+		// '-' marks package exclusions in the class names file, so defaults are disabled with '!' there
+		String disableMarker = allowExclusions ? "!" : "-";
 		try
 		{
 			File optionsFile = new File(mcLocation, fileName);
@@ -140,15 +497,17 @@ public class RenderPlayerAPIEnhancerPlugin implements IFMLLoadingPlugin
 				printer.println("# Render Player API Enhancer " + type + " configuration file");
 				printer.println("######################################################");
 				printer.println("# * one line per " + type);
+				for(String description : descriptions)
+					printer.println("# * " + description);
 				printer.println("# * for comments prepend '#'");
-				printer.println("# * to disable default " + type + " prepend '-'");
+				printer.println("# * to disable default " + type + " prepend '" + disableMarker + "'");
 				printer.println("# * delete this file to get newest defaults on startup");
 				printer.println("######################################################");
 				printer.println();
 				for(String defaultPattern : defaultStrings)
 				{
 					printer.println("# uncomment the line below to disable this default " + type);
-					printer.println("#-" + defaultPattern);
+					printer.println("#" + disableMarker + defaultPattern);
 					printer.println();
 				}
 				printer.println();
@@ -159,6 +518,7 @@ public class RenderPlayerAPIEnhancerPlugin implements IFMLLoadingPlugin
 			Set<String> result = new HashSet<String>();
 			for(String defaultString : defaultStrings)
 				result.add(defaultString);
+			Set<String> disabled = new HashSet<String>();
 
 			BufferedReader reader = new BufferedReader(new FileReader(optionsFile));
 
@@ -172,13 +532,17 @@ public class RenderPlayerAPIEnhancerPlugin implements IFMLLoadingPlugin
 				if(line.isEmpty())
 					continue;
 
-				boolean remove = line.startsWith("-"); 
-				if(remove)
-					result.remove(line.substring(1).trim());
+				// disabling applies after all lines were read, so the order of the lines doesn't matter
+				if(line.startsWith(disableMarker))
+					disabled.add(line.substring(1).trim());
+				else if(allowExclusions && line.startsWith("-") && (line.startsWith("--") || !line.endsWith(".*")))
+					// older files disable defaults with '-' as well, which only works where that can't be an exclusion
+					disabled.add(line.substring(1).trim());
 				else
 					result.add(line);
 			}
 			reader.close();
+			result.removeAll(disabled);
 
 			return result;
 		}
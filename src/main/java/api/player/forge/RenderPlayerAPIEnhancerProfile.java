@@ -0,0 +1,359 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.forge;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.zip.*;
+
+import org.apache.logging.log4j.*;
+
+import net.minecraft.launchwrapper.*;
+import api.player.model.*;
+
+// remembers which classes were enhanced and which mod files they came from, so the next start can enhance them again
+// on worker threads while the game is still loading and the transformer only has to pick up the finished results
+public class RenderPlayerAPIEnhancerProfile
+{
+	private static final int Magic = 0x52504151;
+
+	private static class Entry
+	{
+		private final String className;
+		private final String path;
+		private final String indirectSuperClassName;
+		private final long key;
+
+		private Entry(String className, String path, String indirectSuperClassName, long key)
+		{
+			this.className = className;
+			this.path = path;
+			this.indirectSuperClassName = indirectSuperClassName;
+			this.key = key;
+		}
+	}
+
+	private static class Result
+	{
+		private final String indirectSuperClassName;
+		private final long key;
+		private final byte[] bytes;
+
+		private Result(String indirectSuperClassName, long key, byte[] bytes)
+		{
+			this.indirectSuperClassName = indirectSuperClassName;
+			this.key = key;
+			this.bytes = bytes;
+		}
+	}
+
+	private final File file;
+	private final long configuration;
+	private final Map<String, Entry> recorded;
+	private final Map<String, FutureTask<Result>> prepared;
+	private final AtomicInteger served;
+	private final AtomicInteger stale;
+	private final AtomicInteger busy;
+	private int saved;
+	private boolean reported;
+
+	public RenderPlayerAPIEnhancerProfile(File file, long configuration)
+	{
+		this.file = file;
+		this.configuration = configuration;
+		this.recorded = new ConcurrentHashMap<String, Entry>();
+		this.prepared = new ConcurrentHashMap<String, FutureTask<Result>>();
+		this.served = new AtomicInteger();
+		this.stale = new AtomicInteger();
+		this.busy = new AtomicInteger();
+
+		List<Entry> entries = load(file, configuration);
+		if(!entries.isEmpty())
+			prepare(entries);
+
+		// armor models can still be loaded after the game finished loading
+		Runtime.getRuntime().addShutdownHook(new Thread("Render Player API Enhancer Profile")
+		{
+			@Override
+			public void run()
+			{
+				save();
+			}
+		});
+	}
+
+	// the class enhanced in the background, if it was enhanced from exactly the same bytes and super class
+	public byte[] take(String transformedName, byte[] bytes, String indirectSuperClassName)
+	{
+		FutureTask<Result> task = prepared.remove(transformedName);
+		if(task == null)
+			return null;
+
+		// a task that did not start yet is run right here, one a worker is still running is never waited for
+		// as the worker might need the class loader lock this thread holds
+		task.run();
+		if(!task.isDone())
+		{
+			busy.incrementAndGet();
+			return null;
+		}
+
+		Result result;
+		try
+		{
+			result = task.get();
+		}
+		catch(InterruptedException ie)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		catch(ExecutionException ee)
+		{
+			result = null;
+		}
+
+		if(result == null || result.key != RenderPlayerAPIEnhancerFingerprints.ofBytes(bytes) || !equals(result.indirectSuperClassName, indirectSuperClassName))
+		{
+			stale.incrementAndGet();
+			return null;
+		}
+
+		served.incrementAndGet();
+		return result.bytes;
+	}
+
+	// the bytes are the ones the transformer got, after the transformers before it
+	public void record(String name, String transformedName, byte[] bytes, String indirectSuperClassName)
+	{
+		if(recorded.containsKey(transformedName) || Launch.classLoader == null)
+			return;
+
+		String path = getJarPath(Launch.classLoader.findResource(name.replace('.', '/') + ".class"));
+		if(path != null)
+			recorded.put(transformedName, new Entry(transformedName, path, indirectSuperClassName, RenderPlayerAPIEnhancerFingerprints.ofBytes(bytes)));
+	}
+
+	public synchronized void save()
+	{
+		if(!reported)
+		{
+			ModelPlayerAPIEnhancerClassVisitor.info("served %d classes enhanced in the background, discarded %d outdated ones, did not wait for %d still being enhanced and has %d not loaded yet", served.get(), stale.get(), busy.get(), prepared.size());
+			reported = true;
+		}
+
+		if(recorded.size() == saved)
+			return;
+
+		List<Entry> entries = new ArrayList<Entry>(recorded.values());
+		File temporary = new File(file.getPath() + ".tmp");
+		try
+		{
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+			try
+			{
+				out.writeInt(Magic);
+				out.writeLong(configuration);
+				out.writeInt(entries.size());
+				for(Entry entry : entries)
+				{
+					out.writeUTF(entry.className);
+					out.writeUTF(entry.path);
+					out.writeBoolean(entry.indirectSuperClassName != null);
+					if(entry.indirectSuperClassName != null)
+						out.writeUTF(entry.indirectSuperClassName);
+					out.writeLong(entry.key);
+				}
+			}
+			finally
+			{
+				out.close();
+			}
+
+			if(!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file)))
+				throw new IOException("could not replace " + file);
+			saved = entries.size();
+		}
+		catch(IOException ioe)
+		{
+			temporary.delete();
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer could not save the enhanced classes profile to '%s': %s", file, ioe);
+		}
+	}
+
+	private void prepare(List<Entry> entries)
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), new ThreadFactory()
+		{
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "Render Player API Enhancer Worker " + count.incrementAndGet());
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+
+		Set<String> paths = new HashSet<String>();
+		for(final Entry entry : entries)
+		{
+			FutureTask<Result> task = new FutureTask<Result>(new Callable<Result>()
+			{
+				@Override
+				public Result call() throws IOException
+				{
+					return enhance(entry);
+				}
+			});
+			prepared.put(entry.className, task);
+			executor.execute(task);
+			paths.add(entry.path);
+		}
+		executor.shutdown();
+
+		ModelPlayerAPIEnhancerClassVisitor.info("enhances %d classes from %d mod files in the background", entries.size(), paths.size());
+	}
+
+	private static Result enhance(Entry entry) throws IOException
+	{
+		byte[] bytes;
+		ZipFile zip = new ZipFile(entry.path);
+		try
+		{
+			ZipEntry zipEntry = zip.getEntry(entry.className.replace('.', '/') + ".class");
+			if(zipEntry == null)
+				return null;
+			bytes = readFully(zip.getInputStream(zipEntry), (int)zipEntry.getSize());
+		}
+		finally
+		{
+			zip.close();
+		}
+
+		// classes the transformers before this one change can't be enhanced from the mod file
+		long key = RenderPlayerAPIEnhancerFingerprints.ofBytes(bytes);
+		if(key != entry.key)
+			return null;
+
+		// indirect descendants are left to the transformer while the super class index is not ready
+		if(entry.indirectSuperClassName != null && RenderPlayerAPIEnhancerPlugin.getSuperClassIndex() == null)
+			return null;
+
+		// the transformer serves the classes the class cache already holds from there
+		int features = RenderPlayerAPIEnhancerTransformer.getFeatures(entry.className);
+		RenderPlayerAPIEnhancerClassCache classCache = RenderPlayerAPIEnhancerPlugin.classCache;
+		if(classCache != null && classCache.contains(RenderPlayerAPIEnhancerTransformer.getCacheKey(entry.className, bytes, entry.indirectSuperClassName, features)))
+			return null;
+
+		byte[] result = RenderPlayerAPIEnhancerTransformer.enhance(entry.className, bytes, entry.indirectSuperClassName, features);
+		return result == bytes ? null : new Result(entry.indirectSuperClassName, key, result);
+	}
+
+	private static byte[] readFully(InputStream in, int size) throws IOException
+	{
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream(size > 0 ? size : 4096);
+			byte[] buffer = new byte[4096];
+			int read;
+			while((read = in.read(buffer)) >= 0)
+				out.write(buffer, 0, read);
+			return out.toByteArray();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	// only classes inside mod jars can be enhanced ahead, everything else is left to the transformer
+	private static String getJarPath(URL url)
+	{
+		if(url == null || !url.getProtocol().equals("jar"))
+			return null;
+
+		String spec = url.getFile();
+		int separator = spec.indexOf("!/");
+		if(separator < 0)
+			return null;
+
+		try
+		{
+			return new File(new URI(spec.substring(0, separator))).getPath();
+		}
+		catch(URISyntaxException use)
+		{
+			return null;
+		}
+		catch(IllegalArgumentException iae)
+		{
+			return null;
+		}
+	}
+
+	private static boolean equals(String first, String second)
+	{
+		return first == null ? second == null : first.equals(second);
+	}
+
+	private static List<Entry> load(File file, long configuration)
+	{
+		List<Entry> result = new ArrayList<Entry>();
+		if(!file.exists())
+			return result;
+
+		try
+		{
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try
+			{
+				if(in.readInt() != Magic || in.readLong() != configuration)
+					return result;
+
+				int count = in.readInt();
+				for(int i = 0; i < count; i++)
+				{
+					String className = in.readUTF();
+					String path = in.readUTF();
+					String indirectSuperClassName = in.readBoolean() ? in.readUTF() : null;
+					long key = in.readLong();
+					if(new File(path).isFile())
+						result.add(new Entry(className, path, indirectSuperClassName, key));
+				}
+				return result;
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		catch(IOException ioe)
+		{
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer ignores the unreadable enhanced classes profile '%s': %s", file, ioe);
+			return new ArrayList<Entry>();
+		}
+	}
+}
@@ -0,0 +1,145 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.forge;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.apache.logging.log4j.*;
+
+import api.player.model.*;
+
+public class RenderPlayerAPIEnhancerRejectionFilter
+{
+	private static final int Magic = 0x52504145;
+	private static final int HeaderLength = 16;
+
+	private final File file;
+	private final long configuration;
+	private final long[] rejected;
+	private final Set<Long> added;
+	private final AtomicInteger skipped;
+
+	public RenderPlayerAPIEnhancerRejectionFilter(File file, long configuration)
+	{
+		this.file = file;
+		this.configuration = configuration;
+		this.rejected = load(file, configuration);
+		this.added = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+		this.skipped = new AtomicInteger();
+	}
+
+	public boolean isRejected(long fingerprint)
+	{
+		if(Arrays.binarySearch(rejected, fingerprint) < 0)
+			return false;
+		skipped.incrementAndGet();
+		return true;
+	}
+
+	public void reject(long fingerprint)
+	{
+		added.add(fingerprint);
+	}
+
+	public void save()
+	{
+		ModelPlayerAPIEnhancerClassVisitor.info("skipped %d classes rejected during previous starts and rejected %d new classes", skipped.get(), added.size());
+		if(added.isEmpty())
+			return;
+
+		long[] merged = Arrays.copyOf(rejected, rejected.length + added.size());
+		int count = rejected.length;
+		for(Long fingerprint : added)
+			merged[count++] = fingerprint;
+		Arrays.sort(merged);
+
+		// a unique temporary file, so instances sharing the game directory don't write into each other's
+		File temporary = null;
+		try
+		{
+			temporary = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+			try
+			{
+				int unique = 0;
+				for(int i = 0; i < merged.length; i++)
+					if(i == 0 || merged[i] != merged[i - 1])
+						merged[unique++] = merged[i];
+
+				out.writeInt(Magic);
+				out.writeLong(configuration);
+				out.writeInt(unique);
+				for(int i = 0; i < unique; i++)
+					out.writeLong(merged[i]);
+			}
+			finally
+			{
+				out.close();
+			}
+
+			if(!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file)))
+				throw new IOException("could not replace " + file);
+		}
+		catch(IOException ioe)
+		{
+			if(temporary != null)
+				temporary.delete();
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer could not save the rejected classes to '%s': %s", file, ioe);
+		}
+	}
+
+	private static long[] load(File file, long configuration)
+	{
+		if(!file.exists())
+			return new long[0];
+
+		try
+		{
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try
+			{
+				if(in.readInt() != Magic || in.readLong() != configuration)
+					return new long[0];
+
+				// the count decides how much is allocated, so it has to match the length of the file
+				int count = in.readInt();
+				if(count < 0 || count != (file.length() - HeaderLength) / 8 || (file.length() - HeaderLength) % 8 != 0)
+					throw new IOException("the count " + count + " does not match the length " + file.length());
+
+				long[] result = new long[count];
+				for(int i = 0; i < result.length; i++)
+					result[i] = in.readLong();
+				return result;
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		catch(IOException ioe)
+		{
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer ignores the unreadable rejected classes file '%s': %s", file, ioe);
+			return new long[0];
+		}
+	}
+}
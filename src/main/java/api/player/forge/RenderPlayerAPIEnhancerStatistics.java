@@ -0,0 +1,285 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.forge;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+import javax.management.*;
+
+// counters and timers of the transformer, updated without locks by the class loading threads
+public class RenderPlayerAPIEnhancerStatistics implements RenderPlayerAPIEnhancerStatisticsMBean
+{
+	public static final String Name = "api.player.forge:type=RenderPlayerAPIEnhancer";
+
+	private static final LongBinaryOperator Max = new LongBinaryOperator()
+	{
+		@Override
+		public long applyAsLong(long left, long right)
+		{
+			return Math.max(left, right);
+		}
+	};
+
+	public static class Timer
+	{
+		private final LongAdder total = new LongAdder();
+		private final LongAccumulator max = new LongAccumulator(Max, 0);
+
+		public void add(long nanos)
+		{
+			total.add(nanos);
+			max.accumulate(nanos);
+		}
+
+		private void reset()
+		{
+			total.reset();
+			max.reset();
+		}
+	}
+
+	public final LongAdder classesSeen = new LongAdder();
+	public final LongAdder overlayHits = new LongAdder();
+	public final LongAdder[] ruleMatches = new LongAdder[RenderPlayerAPIEnhancerClassNameMatcher.CanonicalClassNameExclusion + 1];
+	public final LongAdder superClassIndexMatches = new LongAdder();
+	public final LongAdder autoDiscoveryMatches = new LongAdder();
+	public final LongAdder preEnhancementHits = new LongAdder();
+	public final LongAdder rejectionFilterHits = new LongAdder();
+	public final LongAdder classCacheHits = new LongAdder();
+	public final LongAdder superClassRejections = new LongAdder();
+	public final LongAdder enhancements = new LongAdder();
+	public final LongAdder bytesIn = new LongAdder();
+	public final LongAdder bytesOut = new LongAdder();
+	public final Timer matching = new Timer();
+	public final Timer scanning = new Timer();
+	public final Timer rewriting = new Timer();
+
+	public RenderPlayerAPIEnhancerStatistics()
+	{
+		for(int i = 0; i < ruleMatches.length; i++)
+			ruleMatches[i] = new LongAdder();
+	}
+
+	public void register() throws JMException
+	{
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(Name));
+	}
+
+	@Override
+	public long getClassesSeen()
+	{
+		return classesSeen.sum();
+	}
+
+	@Override
+	public long getOverlayHits()
+	{
+		return overlayHits.sum();
+	}
+
+	@Override
+	public long getCanonicalClassNameMatches()
+	{
+		return ruleMatches[RenderPlayerAPIEnhancerClassNameMatcher.CanonicalClassName].sum();
+	}
+
+	@Override
+	public long getCanonicalClassNamePatternMatches()
+	{
+		return ruleMatches[RenderPlayerAPIEnhancerClassNameMatcher.CanonicalClassNamePattern].sum();
+	}
+
+	@Override
+	public long getCanonicalClassNamePrefixMatches()
+	{
+		return ruleMatches[RenderPlayerAPIEnhancerClassNameMatcher.CanonicalClassNamePrefix].sum();
+	}
+
+	@Override
+	public long getCanonicalClassNameGlobMatches()
+	{
+		return ruleMatches[RenderPlayerAPIEnhancerClassNameMatcher.CanonicalClassNameGlob].sum();
+	}
+
+	@Override
+	public long getCanonicalClassNameExclusionMatches()
+	{
+		return ruleMatches[RenderPlayerAPIEnhancerClassNameMatcher.CanonicalClassNameExclusion].sum();
+	}
+
+	@Override
+	public long getSuperClassIndexMatches()
+	{
+		return superClassIndexMatches.sum();
+	}
+
+	@Override
+	public long getAutoDiscoveryMatches()
+	{
+		return autoDiscoveryMatches.sum();
+	}
+
+	@Override
+	public long getPreEnhancementHits()
+	{
+		return preEnhancementHits.sum();
+	}
+
+	@Override
+	public long getRejectionFilterHits()
+	{
+		return rejectionFilterHits.sum();
+	}
+
+	@Override
+	public long getClassCacheHits()
+	{
+		return classCacheHits.sum();
+	}
+
+	@Override
+	public long getSuperClassRejections()
+	{
+		return superClassRejections.sum();
+	}
+
+	@Override
+	public long getEnhancements()
+	{
+		return enhancements.sum();
+	}
+
+	@Override
+	public long getBytesIn()
+	{
+		return bytesIn.sum();
+	}
+
+	@Override
+	public long getBytesOut()
+	{
+		return bytesOut.sum();
+	}
+
+	@Override
+	public long getMatchingNanos()
+	{
+		return matching.total.sum();
+	}
+
+	@Override
+	public long getMaxMatchingNanos()
+	{
+		return matching.max.get();
+	}
+
+	@Override
+	public long getScanningNanos()
+	{
+		return scanning.total.sum();
+	}
+
+	@Override
+	public long getMaxScanningNanos()
+	{
+		return scanning.max.get();
+	}
+
+	@Override
+	public long getRewritingNanos()
+	{
+		return rewriting.total.sum();
+	}
+
+	@Override
+	public long getMaxRewritingNanos()
+	{
+		return rewriting.max.get();
+	}
+
+	@Override
+	public void reset()
+	{
+		classesSeen.reset();
+		overlayHits.reset();
+		for(LongAdder ruleMatch : ruleMatches)
+			ruleMatch.reset();
+		superClassIndexMatches.reset();
+		autoDiscoveryMatches.reset();
+		preEnhancementHits.reset();
+		rejectionFilterHits.reset();
+		classCacheHits.reset();
+		superClassRejections.reset();
+		enhancements.reset();
+		bytesIn.reset();
+		bytesOut.reset();
+		matching.reset();
+		scanning.reset();
+		rewriting.reset();
+	}
+
+	public void save(File file) throws IOException
+	{
+		File temporary = new File(file.getPath() + ".tmp");
+		PrintWriter printer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(temporary), "UTF-8"));
+		try
+		{
+			printer.println("######################################################");
+			printer.println("# Render Player API Enhancer statistics");
+			printer.println("######################################################");
+			printer.println("# * counters of the transformer since the start of the game");
+			printer.println("# * bytes in and out only count the classes enhanced during this start");
+			printer.println("# * times in microseconds, the same values are available through JMX as '" + Name + "'");
+			printer.println("######################################################");
+			printer.println();
+			printer.println("classes seen: " + getClassesSeen());
+			printer.println("classes served from the overlay: " + getOverlayHits());
+			printer.println("canonical class name matches: " + getCanonicalClassNameMatches());
+			printer.println("canonical class name pattern matches: " + getCanonicalClassNamePatternMatches());
+			printer.println("package matches: " + getCanonicalClassNamePrefixMatches());
+			printer.println("wildcard matches: " + getCanonicalClassNameGlobMatches());
+			printer.println("package exclusion matches: " + getCanonicalClassNameExclusionMatches());
+			printer.println("super class index matches: " + getSuperClassIndexMatches());
+			printer.println("auto discovery matches: " + getAutoDiscoveryMatches());
+			printer.println("classes served from the pre-enhancement: " + getPreEnhancementHits());
+			printer.println("classes skipped by the rejection filter: " + getRejectionFilterHits());
+			printer.println("classes served from the class cache: " + getClassCacheHits());
+			printer.println("classes left untouched because of their super class: " + getSuperClassRejections());
+			printer.println("classes enhanced: " + getEnhancements());
+			printer.println("bytes in: " + getBytesIn());
+			printer.println("bytes out: " + getBytesOut());
+			printer.println("matching: " + getMatchingNanos() / 1000 + " total, " + getMaxMatchingNanos() / 1000 + " max");
+			printer.println("scanning: " + getScanningNanos() / 1000 + " total, " + getMaxScanningNanos() / 1000 + " max");
+			printer.println("rewriting: " + getRewritingNanos() / 1000 + " total, " + getMaxRewritingNanos() / 1000 + " max");
+		}
+		finally
+		{
+			printer.close();
+		}
+
+		if(printer.checkError())
+			throw new IOException("could not write " + temporary);
+		if(!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file)))
+			throw new IOException("could not replace " + file);
+	}
+}
@@ -0,0 +1,73 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.forge;
+
+// the management interface of the transformer statistics, under 'api.player.forge:type=RenderPlayerAPIEnhancer'
+public interface RenderPlayerAPIEnhancerStatisticsMBean
+{
+	long getClassesSeen();
+
+	long getOverlayHits();
+
+	long getCanonicalClassNameMatches();
+
+	long getCanonicalClassNamePatternMatches();
+
+	long getCanonicalClassNamePrefixMatches();
+
+	long getCanonicalClassNameGlobMatches();
+
+	long getCanonicalClassNameExclusionMatches();
+
+	long getSuperClassIndexMatches();
+
+	long getAutoDiscoveryMatches();
+
+	long getPreEnhancementHits();
+
+	long getRejectionFilterHits();
+
+	long getClassCacheHits();
+
+	long getSuperClassRejections();
+
+	long getEnhancements();
+
+	long getBytesIn();
+
+	long getBytesOut();
+
+	// looking up the class name rules and the super class index
+	long getMatchingNanos();
+
+	long getMaxMatchingNanos();
+
+	// reading class files for auto discovery and the rejection filter
+	long getScanningNanos();
+
+	long getMaxScanningNanos();
+
+	// enhancing candidate classes with the constant pool patcher or ASM
+	long getRewritingNanos();
+
+	long getMaxRewritingNanos();
+
+	void reset();
+}
@@ -0,0 +1,460 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.forge;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+import org.apache.logging.log4j.*;
+
+import api.player.model.*;
+
+public class RenderPlayerAPIEnhancerSuperClassIndex
+{
+	private static final int Magic = 0x52504149;
+
+	private static class Entry
+	{
+		private final String className;
+		private final String superClassName;
+		private final boolean armorModelCandidate;
+
+		private Entry(String className, String superClassName, boolean armorModelCandidate)
+		{
+			this.className = className;
+			this.superClassName = superClassName;
+			this.armorModelCandidate = armorModelCandidate;
+		}
+	}
+
+	private static class Jar
+	{
+		private final String path;
+		private final long length;
+		private final long lastModified;
+		private final List<Entry> classes;
+
+		private Jar(String path, long length, long lastModified, List<Entry> classes)
+		{
+			this.path = path;
+			this.length = length;
+			this.lastModified = lastModified;
+			this.classes = classes;
+		}
+	}
+
+	private final Map<String, String> superClassNames;
+	private final Set<String> enhancedClassNames;
+	private final Map<String, String> enhancedClassPaths;
+	private final Map<String, Integer> keptHooks;
+	private final Set<String> missedClassNames;
+
+	public RenderPlayerAPIEnhancerSuperClassIndex(File mcLocation, File cacheFile, RenderPlayerAPIEnhancerClassNameMatcher classNameMatcher, boolean autoDiscovery, Set<String> missedClassNames)
+	{
+		this.missedClassNames = missedClassNames;
+
+		long enhancer = RenderPlayerAPIEnhancerFingerprints.ofEnhancer();
+		List<File> files = collectModFiles(mcLocation);
+
+		Map<String, Jar> cached = load(cacheFile, enhancer);
+		List<Jar> jars = scan(files, cached);
+
+		boolean changed = cached.size() != jars.size();
+		for(Jar jar : jars)
+			changed |= cached.get(jar.path) != jar;
+		if(changed)
+			save(cacheFile, enhancer, jars);
+
+		superClassNames = new HashMap<String, String>();
+		Set<String> armorModelCandidates = new HashSet<String>();
+		for(Jar jar : jars)
+			for(Entry entry : jar.classes)
+			{
+				superClassNames.put(entry.className, entry.superClassName);
+				if(entry.armorModelCandidate)
+					armorModelCandidates.add(entry.className);
+			}
+
+		enhancedClassNames = new HashSet<String>();
+		for(String className : superClassNames.keySet())
+		{
+			List<String> ancestors = getModelBipedAncestors(className);
+			if(ancestors == null || ancestors.isEmpty())
+				continue;
+
+			RenderPlayerAPIEnhancerClassNameMatcher.Rule rule = classNameMatcher.match(className);
+			boolean candidate = rule != null ? rule.kind != RenderPlayerAPIEnhancerClassNameMatcher.CanonicalClassNameExclusion : autoDiscovery && armorModelCandidates.contains(ancestors.get(ancestors.size() - 1));
+			if(!candidate)
+				continue;
+
+			// an indirect descendant can only be enhanced together with all of its ancestors
+			boolean excluded = false;
+			for(String ancestor : ancestors)
+			{
+				RenderPlayerAPIEnhancerClassNameMatcher.Rule ancestorRule = classNameMatcher.match(ancestor);
+				excluded |= ancestorRule != null && ancestorRule.kind == RenderPlayerAPIEnhancerClassNameMatcher.CanonicalClassNameExclusion;
+			}
+			if(excluded)
+				continue;
+
+			enhancedClassNames.add(className);
+			enhancedClassNames.addAll(ancestors);
+		}
+
+		enhancedClassPaths = new HashMap<String, String>();
+		for(Jar jar : jars)
+			for(Entry entry : jar.classes)
+				if(enhancedClassNames.contains(entry.className))
+					enhancedClassPaths.put(entry.className, jar.path);
+		keptHooks = new ConcurrentHashMap<String, Integer>();
+
+		ModelPlayerAPIEnhancerClassVisitor.info("indexed %d classes in %d mod files and found %d candidate classes that extend the model biped class through other candidate classes", superClassNames.size(), jars.size(), enhancedClassNames.size());
+	}
+
+	public boolean isEnhanced(String transformedName)
+	{
+		if(!enhancedClassNames.contains(transformedName))
+			return false;
+
+		// an ancestor transformed before the index was ready was not enhanced through it
+		if(!missedClassNames.isEmpty())
+			for(String ancestor : getModelBipedAncestors(transformedName))
+				if(missedClassNames.contains(ancestor))
+					return false;
+		return true;
+	}
+
+	public String getIndirectSuperClassName(String transformedName)
+	{
+		if(!enhancedClassNames.contains(transformedName))
+			return null;
+
+		String superClassName = superClassNames.get(transformedName);
+		return enhancedClassNames.contains(superClassName) ? superClassName.replace('.', '/') : null;
+	}
+
+	// whether the given indirect descendant would rename an implementation while an enhanced ancestor keeps its own one
+	// under the original name, which would then run in addition to the renamed one
+	public boolean conflictsWithAncestors(String transformedName, byte[] bytes)
+	{
+		return conflictsWithAncestors(transformedName, ModelPlayerAPIEnhancerClassScanner.scan(bytes, RenderPlayerAPIEnhancerPlugin.isObfuscated));
+	}
+
+	private boolean conflictsWithAncestors(String className, ModelPlayerAPIEnhancerClassScanner scanner)
+	{
+		return (scanner.getRenamedHooks() & getAncestorKeptHooks(className)) != 0;
+	}
+
+	// the hooks the classes between the given class and the model biped class implement under their original names
+	public int getAncestorKeptHooks(String transformedName)
+	{
+		int hooks = 0;
+		List<String> ancestors = getModelBipedAncestors(transformedName);
+		if(ancestors != null)
+			for(String ancestor : ancestors)
+				hooks |= getKeptHooks(ancestor);
+		return hooks;
+	}
+
+	// the hooks the given enhanced class implements under their original names, all of them when it can not be read
+	private int getKeptHooks(String className)
+	{
+		Integer hooks = keptHooks.get(className);
+		if(hooks == null)
+		{
+			byte[] bytes = readClass(className);
+			if(bytes == null)
+				hooks = -1;
+			else
+			{
+				ModelPlayerAPIEnhancerClassScanner scanner = ModelPlayerAPIEnhancerClassScanner.scan(bytes, RenderPlayerAPIEnhancerPlugin.isObfuscated);
+				// an ancestor that is left untouched itself keeps all of its implementations
+				hooks = conflictsWithAncestors(className, scanner) ? scanner.getImplementedHooks() : scanner.getKeptHooks();
+			}
+			keptHooks.put(className, hooks);
+		}
+		return hooks;
+	}
+
+	private byte[] readClass(String className)
+	{
+		String path = enhancedClassPaths.get(className);
+		if(path == null)
+			return null;
+
+		try
+		{
+			ZipFile zip = new ZipFile(path);
+			try
+			{
+				ZipEntry entry = zip.getEntry(className.replace('.', '/') + ".class");
+				return entry == null ? null : readFully(zip.getInputStream(entry), (int)entry.getSize());
+			}
+			finally
+			{
+				zip.close();
+			}
+		}
+		catch(IOException ioe)
+		{
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer could not read the class '%s' from the mod file '%s': %s", className, path, ioe);
+			return null;
+		}
+	}
+
+	// the classes between the given class and the model biped class, nearest first, or null for unrelated classes
+	private List<String> getModelBipedAncestors(String className)
+	{
+		List<String> ancestors = new ArrayList<String>();
+		String current = className;
+		while(true)
+		{
+			String superClassName = superClassNames.get(current);
+			if(superClassName == null)
+				return null;
+			if(isModelBiped(superClassName))
+				return ancestors;
+			if(ancestors.size() > superClassNames.size())
+				return null;
+			ancestors.add(superClassName);
+			current = superClassName;
+		}
+	}
+
+	private static boolean isModelBiped(String className)
+	{
+		return className.equals("net.minecraft.client.model.ModelBiped") || (RenderPlayerAPIEnhancerPlugin.isObfuscated && className.equals(ModelPlayerAPIEnhancerClassFile.ObfuscatedModelBiped));
+	}
+
+	static List<File> collectModFiles(File mcLocation)
+	{
+		List<File> files = new ArrayList<File>();
+		collectJars(new File(mcLocation, "mods"), files, 0);
+		return files;
+	}
+
+	private static void collectJars(File directory, List<File> files, int depth)
+	{
+		File[] children = directory.listFiles();
+		if(children == null)
+			return;
+
+		Arrays.sort(children);
+		for(File child : children)
+			if(child.isDirectory())
+			{
+				if(depth == 0)
+					collectJars(child, files, depth + 1);
+			}
+			else if(child.getName().endsWith(".jar") || child.getName().endsWith(".zip"))
+				files.add(child);
+	}
+
+	private static List<Jar> scan(List<File> files, Map<String, Jar> cached)
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors())), new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "Render Player API Enhancer Indexer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		try
+		{
+			List<Future<Jar>> futures = new ArrayList<Future<Jar>>();
+			for(final File file : files)
+			{
+				Jar jar = cached.get(file.getPath());
+				if(jar != null && jar.length == file.length() && jar.lastModified == file.lastModified())
+				{
+					futures.add(CompletableFuture.completedFuture(jar));
+					continue;
+				}
+
+				futures.add(executor.submit(new Callable<Jar>()
+				{
+					@Override
+					public Jar call()
+					{
+						return scan(file);
+					}
+				}));
+			}
+
+			List<Jar> result = new ArrayList<Jar>();
+			for(Future<Jar> future : futures)
+				result.add(future.get());
+			return result;
+		}
+		catch(InterruptedException ie)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(ie);
+		}
+		catch(ExecutionException ee)
+		{
+			throw new RuntimeException(ee.getCause());
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	private static Jar scan(File file)
+	{
+		List<Entry> classes = new ArrayList<Entry>();
+		try
+		{
+			ZipFile zip = new ZipFile(file);
+			try
+			{
+				Enumeration<? extends ZipEntry> entries = zip.entries();
+				while(entries.hasMoreElements())
+				{
+					ZipEntry entry = entries.nextElement();
+					if(entry.isDirectory() || !entry.getName().endsWith(".class") || entry.getName().startsWith("META-INF/"))
+						continue;
+
+					byte[] bytes = readFully(zip.getInputStream(entry), (int)entry.getSize());
+					String superClassName = ModelPlayerAPIEnhancerClassFile.readSuperClassName(bytes);
+					if(superClassName == null || superClassName.equals("java/lang/Object"))
+						continue;
+
+					String className = ModelPlayerAPIEnhancerClassFile.readClassName(bytes);
+					boolean armorModelCandidate = ModelPlayerAPIEnhancerClassFile.isArmorModelCandidate(bytes, RenderPlayerAPIEnhancerPlugin.isObfuscated);
+					classes.add(new Entry(className.replace('/', '.'), superClassName.replace('/', '.'), armorModelCandidate));
+				}
+			}
+			finally
+			{
+				zip.close();
+			}
+		}
+		catch(IOException ioe)
+		{
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer could not index the mod file '%s': %s", file, ioe);
+		}
+		return new Jar(file.getPath(), file.length(), file.lastModified(), classes);
+	}
+
+	private static byte[] readFully(InputStream in, int size) throws IOException
+	{
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream(size > 0 ? size : 4096);
+			byte[] buffer = new byte[4096];
+			int read;
+			while((read = in.read(buffer)) > 0)
+				out.write(buffer, 0, read);
+			return out.toByteArray();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	private static Map<String, Jar> load(File file, long enhancer)
+	{
+		Map<String, Jar> result = new HashMap<String, Jar>();
+		if(!file.exists())
+			return result;
+
+		try
+		{
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+			try
+			{
+				if(in.readInt() != Magic || in.readLong() != enhancer)
+					return result;
+
+				int jarCount = in.readInt();
+				for(int i = 0; i < jarCount; i++)
+				{
+					String path = in.readUTF();
+					long length = in.readLong();
+					long lastModified = in.readLong();
+					int classCount = in.readInt();
+					List<Entry> classes = new ArrayList<Entry>(classCount);
+					for(int j = 0; j < classCount; j++)
+						classes.add(new Entry(in.readUTF(), in.readUTF(), in.readBoolean()));
+					result.put(path, new Jar(path, length, lastModified, classes));
+				}
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		catch(IOException ioe)
+		{
+			result.clear();
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer ignores its unreadable super class index '%s': %s", file, ioe);
+		}
+		return result;
+	}
+
+	private static void save(File file, long enhancer, List<Jar> jars)
+	{
+		File temporary = new File(file.getPath() + ".tmp");
+		try
+		{
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temporary))));
+			try
+			{
+				out.writeInt(Magic);
+				out.writeLong(enhancer);
+				out.writeInt(jars.size());
+				for(Jar jar : jars)
+				{
+					out.writeUTF(jar.path);
+					out.writeLong(jar.length);
+					out.writeLong(jar.lastModified);
+					out.writeInt(jar.classes.size());
+					for(Entry entry : jar.classes)
+					{
+						out.writeUTF(entry.className);
+						out.writeUTF(entry.superClassName);
+						out.writeBoolean(entry.armorModelCandidate);
+					}
+				}
+			}
+			finally
+			{
+				out.close();
+			}
+
+			if(!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file)))
+				throw new IOException("could not replace " + file);
+		}
+		catch(IOException ioe)
+		{
+			temporary.delete();
+			ModelPlayerAPIEnhancerClassVisitor.log(Level.WARN, "Render Player API Enhancer could not save its super class index to '%s': %s", file, ioe);
+		}
+	}
+}
@@ -28,24 +28,245 @@ public class RenderPlayerAPIEnhancerTransformer implements IClassTransformer
 	@Override
 	public byte[] transform(String name, String transformedName, byte[] bytes)
 	{
-		if(transformedName.startsWith("api.player.model."))
-			return bytes;
-		if(transformedName.startsWith("api.player.render."))
+		RenderPlayerAPIEnhancerStatistics statistics = RenderPlayerAPIEnhancerPlugin.statistics;
+		if(statistics != null)
+			statistics.classesSeen.increment();
+
+		if(isIgnored(transformedName))
 			return bytes;
-		if(transformedName.equals("net.minecraft.client.model.ModelArmorStandArmor"))
+
+		RenderPlayerAPIEnhancerOverlay overlay = RenderPlayerAPIEnhancerPlugin.overlay;
+		if(overlay != null && bytes != null)
+		{
+			byte[] enhanced = overlay.get(transformedName, bytes);
+			if(enhanced != null)
+			{
+				if(statistics != null)
+					statistics.overlayHits.increment();
+				return enhanced;
+			}
+		}
+
+		boolean timed = statistics != null || ModelPlayerAPIEnhancerTrace.enabled;
+		long start = timed ? System.nanoTime() : 0;
+		RenderPlayerAPIEnhancerClassNameMatcher.Rule rule = RenderPlayerAPIEnhancerPlugin.classNameMatcher.match(transformedName);
+		RenderPlayerAPIEnhancerSuperClassIndex superClassIndex = RenderPlayerAPIEnhancerPlugin.getSuperClassIndex();
+		if(superClassIndex == null && mightBeIndexed(transformedName))
+			RenderPlayerAPIEnhancerPlugin.missSuperClassIndex(transformedName);
+		boolean indexed = superClassIndex != null && superClassIndex.isEnhanced(transformedName);
+		long matched = timed ? System.nanoTime() : 0;
+		if(statistics != null)
+			statistics.matching.add(matched - start);
+
+		if(rule == null && !indexed)
+		{
+			if(!RenderPlayerAPIEnhancerPlugin.autoDiscovery)
+				return bytes;
+
+			long scanStart = statistics != null ? System.nanoTime() : 0;
+			boolean candidate = ModelPlayerAPIEnhancerClassFile.isArmorModelCandidate(bytes, RenderPlayerAPIEnhancerPlugin.isObfuscated);
+			if(statistics != null)
+			{
+				statistics.scanning.add(System.nanoTime() - scanStart);
+				if(candidate)
+					statistics.autoDiscoveryMatches.increment();
+			}
+			if(!candidate)
+				return bytes;
+		}
+		else if(statistics != null)
+		{
+			if(rule != null)
+				statistics.ruleMatches[rule.kind].increment();
+			else
+				statistics.superClassIndexMatches.increment();
+		}
+
+		if(rule != null && rule.kind == RenderPlayerAPIEnhancerClassNameMatcher.CanonicalClassNameExclusion)
 			return bytes;
-		for(String canonicalClassNamePattern : RenderPlayerAPIEnhancerPlugin.canonicalClassNamePatterns)
-			if(transformedName.matches(canonicalClassNamePattern))
+
+		if(ModelPlayerAPIEnhancerTrace.enabled)
+			ModelPlayerAPIEnhancerTrace.add("match", transformedName, start, matched);
+
+		String indirectSuperClassName = indexed ? superClassIndex.getIndirectSuperClassName(transformedName) : null;
+		byte[] result = transformCandidate(name, transformedName, bytes, rule, indexed, indirectSuperClassName, statistics);
+
+		if(ModelPlayerAPIEnhancerTrace.enabled)
+			ModelPlayerAPIEnhancerTrace.add("transform", transformedName, start);
+		return result;
+	}
+
+	private static byte[] transformCandidate(String name, String transformedName, byte[] bytes, RenderPlayerAPIEnhancerClassNameMatcher.Rule rule, boolean indexed, String indirectSuperClassName, RenderPlayerAPIEnhancerStatistics statistics)
+	{
+		int features = getFeatures(transformedName);
+
+		RenderPlayerAPIEnhancerProfile profile = RenderPlayerAPIEnhancerPlugin.profile;
+		RenderPlayerAPIEnhancerClassCache classCache = RenderPlayerAPIEnhancerPlugin.classCache;
+		long key = 0;
+		if(classCache != null && bytes != null)
+		{
+			key = getCacheKey(transformedName, bytes, indirectSuperClassName, features);
+			byte[] cached = classCache.get(key);
+			if(cached != null)
 			{
-				ModelPlayerAPIEnhancerClassVisitor.info("detects class '%s' that might be a player armor class because it matches the configured canonical class name pattern '%s'", transformedName, canonicalClassNamePattern);
-				return ModelPlayerAPIEnhancerClassVisitor.transform(bytes, RenderPlayerAPIEnhancerPlugin.isObfuscated);
+				if(profile != null)
+					profile.record(name, transformedName, bytes, indirectSuperClassName);
+				if(statistics != null)
+					statistics.classCacheHits.increment();
+				return cached;
 			}
-		for(String canonicalClassName : RenderPlayerAPIEnhancerPlugin.canonicalClassNames)
-			if(transformedName.equals(canonicalClassName))
+		}
+
+		// the class cache is checked first, it only maps what earlier starts already enhanced while the pre-enhancement
+		// might still have to enhance the class right here
+		if(profile != null && bytes != null)
+		{
+			byte[] enhanced = profile.take(transformedName, bytes, indirectSuperClassName);
+			if(enhanced != null)
+			{
+				if(classCache != null)
+					classCache.put(key, enhanced);
+				profile.record(name, transformedName, bytes, indirectSuperClassName);
+				if(statistics != null)
+					statistics.preEnhancementHits.increment();
+				return enhanced;
+			}
+		}
+
+		RenderPlayerAPIEnhancerRejectionFilter rejectionFilter = RenderPlayerAPIEnhancerPlugin.rejectionFilter;
+		long fingerprint = 0;
+		if(rejectionFilter != null && bytes != null)
+		{
+			long start = statistics != null ? System.nanoTime() : 0;
+			fingerprint = RenderPlayerAPIEnhancerFingerprints.ofClass(transformedName, bytes);
+			boolean rejected = rejectionFilter.isRejected(fingerprint);
+			if(statistics != null)
+			{
+				statistics.scanning.add(System.nanoTime() - start);
+				if(rejected)
+					statistics.rejectionFilterHits.increment();
+			}
+			if(rejected)
+				return bytes;
+		}
+
+		logCandidate(transformedName, rule, indexed);
+		long start = statistics != null ? System.nanoTime() : 0;
+		byte[] result = enhance(transformedName, bytes, indirectSuperClassName, features);
+		if(statistics != null)
+			statistics.rewriting.add(System.nanoTime() - start);
+
+		if(result == bytes)
+		{
+			if(rejectionFilter != null && bytes != null)
+				rejectionFilter.reject(fingerprint);
+			if(statistics != null)
+				statistics.superClassRejections.increment();
+		}
+		else
+		{
+			if(classCache != null)
+				classCache.put(key, result);
+			if(profile != null)
+				profile.record(name, transformedName, bytes, indirectSuperClassName);
+			if(statistics != null && bytes != null)
 			{
-				ModelPlayerAPIEnhancerClassVisitor.info("detects class '%s' that might be a player armor class because it equals the configured canonical class name'%s'", transformedName, canonicalClassName);
-				return ModelPlayerAPIEnhancerClassVisitor.transform(bytes, RenderPlayerAPIEnhancerPlugin.isObfuscated);
+				statistics.enhancements.increment();
+				statistics.bytesIn.add(bytes.length);
+				statistics.bytesOut.add(result.length);
 			}
-		return bytes;
+		}
+		return result;
+	}
+
+	static long getCacheKey(String transformedName, byte[] bytes, String indirectSuperClassName, int features)
+	{
+		long key = RenderPlayerAPIEnhancerFingerprints.ofBytes(bytes);
+		// the result also depends on the methods the enhanced super classes keep
+		if(indirectSuperClassName != null)
+			key = RenderPlayerAPIEnhancerFingerprints.update(RenderPlayerAPIEnhancerFingerprints.update(key, indirectSuperClassName), RenderPlayerAPIEnhancerPlugin.getSuperClassIndex().getAncestorKeptHooks(transformedName));
+		if(features != 0)
+			key = RenderPlayerAPIEnhancerFingerprints.update(key, features);
+		return key;
+	}
+
+	static byte[] enhance(String transformedName, byte[] bytes, String indirectSuperClassName, int features)
+	{
+		RenderPlayerAPIEnhancerSuperClassIndex superClassIndex = indirectSuperClassName != null ? RenderPlayerAPIEnhancerPlugin.getSuperClassIndex() : null;
+		if(superClassIndex != null && bytes != null && superClassIndex.conflictsWithAncestors(transformedName, bytes))
+		{
+			ModelPlayerAPIEnhancerClassVisitor.detail("leaves class '%s' untouched because it would rename a method one of its enhanced super classes keeps under the original name", transformedName);
+			return bytes;
+		}
+
+		long start = ModelPlayerAPIEnhancerTrace.enabled ? System.nanoTime() : 0;
+		byte[] result = RenderPlayerAPIEnhancerPlugin.constantPoolPatching ? ModelPlayerAPIEnhancerConstantPoolPatcher.patch(bytes, RenderPlayerAPIEnhancerPlugin.isObfuscated, indirectSuperClassName, features) : null;
+		if(result == null)
+			result = ModelPlayerAPIEnhancerClassVisitor.transform(bytes, RenderPlayerAPIEnhancerPlugin.isObfuscated, indirectSuperClassName, features);
+		if(ModelPlayerAPIEnhancerTrace.enabled)
+			ModelPlayerAPIEnhancerTrace.add("rewrite", transformedName, start);
+		return result;
+	}
+
+	// the optional changes configured for the given class
+	static int getFeatures(String transformedName)
+	{
+		int features = 0;
+		if(RenderPlayerAPIEnhancerPlugin.rotationGuard && !RenderPlayerAPIEnhancerPlugin.rotationGuardExclusions.contains(transformedName))
+			features |= ModelPlayerAPIEnhancerClassVisitor.RotationGuard;
+		if(RenderPlayerAPIEnhancerPlugin.getterCache)
+			features |= ModelPlayerAPIEnhancerClassVisitor.GetterCache;
+		if(RenderPlayerAPIEnhancerPlugin.allocationHoisting && !RenderPlayerAPIEnhancerPlugin.allocationHoistingExclusions.contains(transformedName))
+			features |= ModelPlayerAPIEnhancerClassVisitor.AllocationHoisting;
+		if(RenderPlayerAPIEnhancerPlugin.renderProfile != null)
+			features |= ModelPlayerAPIEnhancerClassVisitor.RenderProfiling;
+		if(RenderPlayerAPIEnhancerPlugin.allocationRates != null)
+			features |= ModelPlayerAPIEnhancerClassVisitor.AllocationSampling;
+		if(RenderPlayerAPIEnhancerPlugin.flightRecorderRenderCalls)
+			features |= ModelPlayerAPIEnhancerClassVisitor.FlightRecording;
+		if(RenderPlayerAPIEnhancerPlugin.allocationReport != null)
+			features |= ModelPlayerAPIEnhancerClassVisitor.AllocationReport;
+		return features;
+	}
+
+	private static boolean isIgnored(String transformedName)
+	{
+		return transformedName.startsWith("api.player.model.") || transformedName.startsWith("api.player.render.") || transformedName.equals("net.minecraft.client.model.ModelArmorStandArmor");
+	}
+
+	// the super class index only knows mod classes
+	private static boolean mightBeIndexed(String transformedName)
+	{
+		return RenderPlayerAPIEnhancerPlugin.superClassIndexFile != null && !transformedName.startsWith("net.minecraft.") && !transformedName.startsWith("net.minecraftforge.") && !transformedName.startsWith("com.mojang.");
+	}
+
+	// whether a class might be a candidate judging by its name alone, so tools can skip reading the others
+	static boolean mightBeCandidate(String transformedName)
+	{
+		if(isIgnored(transformedName))
+			return false;
+
+		RenderPlayerAPIEnhancerClassNameMatcher.Rule rule = RenderPlayerAPIEnhancerPlugin.classNameMatcher.match(transformedName);
+		if(rule != null)
+			return rule.kind != RenderPlayerAPIEnhancerClassNameMatcher.CanonicalClassNameExclusion;
+
+		RenderPlayerAPIEnhancerSuperClassIndex superClassIndex = RenderPlayerAPIEnhancerPlugin.getSuperClassIndex();
+		return RenderPlayerAPIEnhancerPlugin.autoDiscovery || (superClassIndex != null && superClassIndex.isEnhanced(transformedName));
+	}
+
+	private static void logCandidate(String transformedName, RenderPlayerAPIEnhancerClassNameMatcher.Rule rule, boolean indexed)
+	{
+		if(rule == null && indexed)
+			ModelPlayerAPIEnhancerClassVisitor.detail("detects class '%s' that might be a player armor class because it is extended by another candidate class", transformedName);
+		else if(rule == null)
+			ModelPlayerAPIEnhancerClassVisitor.detail("detects class '%s' that might be a player armor class because it directly extends the model biped class and declares model parts or render methods", transformedName);
+		else if(rule.kind == RenderPlayerAPIEnhancerClassNameMatcher.CanonicalClassNamePattern)
+			ModelPlayerAPIEnhancerClassVisitor.detail("detects class '%s' that might be a player armor class because it matches the configured canonical class name pattern '%s'", transformedName, rule.text);
+		else if(rule.kind == RenderPlayerAPIEnhancerClassNameMatcher.CanonicalClassNamePrefix)
+			ModelPlayerAPIEnhancerClassVisitor.detail("detects class '%s' that might be a player armor class because it is inside the configured package '%s'", transformedName, rule.text);
+		else if(rule.kind == RenderPlayerAPIEnhancerClassNameMatcher.CanonicalClassNameGlob)
+			ModelPlayerAPIEnhancerClassVisitor.detail("detects class '%s' that might be a player armor class because it matches the configured canonical class name wildcard '%s'", transformedName, rule.text);
+		else
+			ModelPlayerAPIEnhancerClassVisitor.detail("detects class '%s' that might be a player armor class because it equals the configured canonical class name '%s'", transformedName, rule.text);
 	}
 }
\ No newline at end of file
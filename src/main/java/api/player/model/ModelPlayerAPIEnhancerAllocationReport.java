@@ -0,0 +1,93 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// the allocation sites found in the methods of enhanced classes that run every frame, ranked by their number
+public final class ModelPlayerAPIEnhancerAllocationReport
+{
+	private static final Map<String, List<String>> sites = new ConcurrentHashMap<String, List<String>>();
+	private static int saved = -1;
+
+	private ModelPlayerAPIEnhancerAllocationReport()
+	{
+	}
+
+	static void add(String method, List<String> methodSites)
+	{
+		sites.put(method, methodSites);
+	}
+
+	public static synchronized void save(File file) throws IOException
+	{
+		if(sites.size() == saved)
+			return;
+
+		List<Map.Entry<String, List<String>>> methods = new ArrayList<Map.Entry<String, List<String>>>(sites.entrySet());
+		Collections.sort(methods, new Comparator<Map.Entry<String, List<String>>>()
+		{
+			@Override
+			public int compare(Map.Entry<String, List<String>> first, Map.Entry<String, List<String>> second)
+			{
+				int difference = second.getValue().size() - first.getValue().size();
+				return difference != 0 ? difference : first.getKey().compareTo(second.getKey());
+			}
+		});
+
+		int total = 0;
+		for(Map.Entry<String, List<String>> method : methods)
+			total += method.getValue().size();
+
+		File temporary = new File(file.getPath() + ".tmp");
+		PrintWriter printer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(temporary), "UTF-8"));
+		try
+		{
+			printer.println("######################################################");
+			printer.println("# Render Player API Enhancer allocation report");
+			printer.println("######################################################");
+			printer.println("# * allocation sites in the render, rotation angle and living animation methods of enhanced classes");
+			printer.println("# * these methods run for every armor piece of every player every frame");
+			printer.println("# * methods with the most allocation sites first");
+			printer.println("######################################################");
+			printer.println();
+			printer.println(total + " allocation sites in " + methods.size() + " methods");
+			for(Map.Entry<String, List<String>> method : methods)
+			{
+				printer.println();
+				printer.println(method.getKey() + ": " + method.getValue().size() + " allocation sites");
+				for(String site : method.getValue())
+					printer.println("    " + site);
+			}
+		}
+		finally
+		{
+			printer.close();
+		}
+
+		if(printer.checkError())
+			throw new IOException("could not write " + temporary);
+		if(!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file)))
+			throw new IOException("could not replace " + file);
+		saved = methods.size();
+	}
+}
@@ -0,0 +1,176 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// the bytes the render thread allocates during every n-th call of the probed per frame methods of enhanced classes,
+// including everything they call, measured with the allocation counter of the thread the virtual machine keeps
+public final class ModelPlayerAPIEnhancerAllocationSampler
+{
+	private static final int Calls = 0;
+	private static final int Samples = 1;
+	private static final int Bytes = 2;
+	private static final int Since = 3;
+
+	public static int interval = 16;
+
+	private static final ConcurrentMap<String, long[]> counts = new ConcurrentHashMap<String, long[]>();
+	private static final com.sun.management.ThreadMXBean threads = getThreads();
+	private static final long overhead = getOverhead();
+	private static int countdown;
+
+	private ModelPlayerAPIEnhancerAllocationSampler()
+	{
+	}
+
+	private static com.sun.management.ThreadMXBean getThreads()
+	{
+		try
+		{
+			ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			if(threads instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean)threads).isThreadAllocatedMemorySupported())
+			{
+				((com.sun.management.ThreadMXBean)threads).setThreadAllocatedMemoryEnabled(true);
+				return (com.sun.management.ThreadMXBean)threads;
+			}
+		}
+		catch(LinkageError le)
+		{
+		}
+		catch(UnsupportedOperationException uoe)
+		{
+		}
+		return null;
+	}
+
+	// reading the counter may allocate itself, which is subtracted from every sample
+	private static long getOverhead()
+	{
+		if(threads == null)
+			return 0;
+
+		long overhead = Long.MAX_VALUE;
+		long id = Thread.currentThread().getId();
+		for(int i = 0; i < 16; i++)
+		{
+			long start = threads.getThreadAllocatedBytes(id);
+			overhead = Math.min(overhead, threads.getThreadAllocatedBytes(id) - start);
+		}
+		return Math.max(overhead, 0);
+	}
+
+	public static boolean isSupported()
+	{
+		return threads != null;
+	}
+
+	// called by the probes of enhanced classes when their method is entered, a negative result means the call is not sampled
+	public static long enter()
+	{
+		if(threads == null || --countdown > 0)
+			return -1;
+		// a random gap averaging the interval, so the samples don't keep hitting the same methods of a fixed call order
+		countdown = 1 + ThreadLocalRandom.current().nextInt(2 * interval - 1);
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	// called by the probes of enhanced classes with the result of 'enter' when their method returns
+	public static void exit(String method, long start)
+	{
+		long[] methodCounts = counts.get(method);
+		if(methodCounts == null)
+			methodCounts = create(method);
+		methodCounts[Calls]++;
+		if(start >= 0)
+		{
+			methodCounts[Samples]++;
+			methodCounts[Bytes] += Math.max(threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - start - overhead, 0);
+		}
+	}
+
+	private static long[] create(String method)
+	{
+		long[] methodCounts = new long[Since + 1];
+		methodCounts[Since] = System.nanoTime();
+		long[] existing = counts.putIfAbsent(method, methodCounts);
+		return existing != null ? existing : methodCounts;
+	}
+
+	private static double getBytesPerCall(long[] methodCounts)
+	{
+		return methodCounts[Samples] == 0 ? 0 : (double)methodCounts[Bytes] / methodCounts[Samples];
+	}
+
+	private static double getBytesPerSecond(long[] methodCounts, long now)
+	{
+		return getBytesPerCall(methodCounts) * methodCounts[Calls] / Math.max((now - methodCounts[Since]) / 1E9, 1);
+	}
+
+	public static synchronized void save(File file) throws IOException
+	{
+		// the counts keep changing on the render thread, so each is copied once and only the copies are read
+		final long now = System.nanoTime();
+		final Map<String, long[]> methods = new TreeMap<String, long[]>();
+		for(Map.Entry<String, long[]> entry : counts.entrySet())
+			methods.put(entry.getKey(), entry.getValue().clone());
+
+		List<String> ranked = new ArrayList<String>(methods.keySet());
+		Collections.sort(ranked, new Comparator<String>()
+		{
+			@Override
+			public int compare(String first, String second)
+			{
+				return Double.compare(getBytesPerSecond(methods.get(second), now), getBytesPerSecond(methods.get(first), now));
+			}
+		});
+
+		File temporary = new File(file.getPath() + ".tmp");
+		PrintWriter printer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(temporary), "UTF-8"));
+		try
+		{
+			printer.println("######################################################");
+			printer.println("# Render Player API Enhancer allocation rates");
+			printer.println("######################################################");
+			printer.println("# * bytes allocated by the local render, rotation angle and living animation methods of enhanced classes");
+			printer.println("# * including everything they call, on average one in every " + interval + " calls is sampled at random");
+			printer.println("# * methods that allocate the most bytes per second first");
+			printer.println("######################################################");
+			printer.println();
+			for(String method : ranked)
+			{
+				long[] methodCounts = methods.get(method);
+				printer.println(String.format(Locale.ROOT, "%s: %d calls, %d sampled, %.1f bytes per call, %.1f bytes per second", method, methodCounts[Calls], methodCounts[Samples], getBytesPerCall(methodCounts), getBytesPerSecond(methodCounts, now)));
+			}
+		}
+		finally
+		{
+			printer.close();
+		}
+
+		if(printer.checkError())
+			throw new IOException("could not write " + temporary);
+		if(!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file)))
+			throw new IOException("could not replace " + file);
+	}
+}
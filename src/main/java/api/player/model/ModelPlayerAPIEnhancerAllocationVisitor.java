@@ -0,0 +1,106 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import java.util.*;
+
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+// collects the allocation sites of a method that runs every frame and hands them to the report when done
+public class ModelPlayerAPIEnhancerAllocationVisitor extends MethodVisitor
+{
+	public static final String[] LocalNames = new String[] { "localRender", "localSetRotationAngles", "localSetLivingAnimations" };
+
+	private static final String[] primitiveArrayTypes = new String[] { "boolean", "char", "float", "double", "byte", "short", "int", "long" };
+
+	private final String method;
+	private final List<String> sites = new ArrayList<String>();
+	private int line = -1;
+
+	public ModelPlayerAPIEnhancerAllocationVisitor(MethodVisitor paramMethodVisitor, String enhancableClassName, String name, String desc)
+	{
+		super(262144, paramMethodVisitor);
+		this.method = enhancableClassName + "." + name + desc;
+	}
+
+	@Override
+	public void visitLineNumber(int line, Label start)
+	{
+		this.line = line;
+		super.visitLineNumber(line, start);
+	}
+
+	@Override
+	public void visitTypeInsn(int opcode, String type)
+	{
+		if(opcode == Opcodes.NEW)
+			add("new " + type.replace('/', '.'));
+		else if(opcode == Opcodes.ANEWARRAY)
+			add("new " + Type.getObjectType(type).getClassName() + "[]");
+		super.visitTypeInsn(opcode, type);
+	}
+
+	@Override
+	public void visitIntInsn(int opcode, int operand)
+	{
+		if(opcode == Opcodes.NEWARRAY && operand >= Opcodes.T_BOOLEAN && operand <= Opcodes.T_LONG)
+			add("new " + primitiveArrayTypes[operand - Opcodes.T_BOOLEAN] + "[]");
+		super.visitIntInsn(opcode, operand);
+	}
+
+	@Override
+	public void visitMultiANewArrayInsn(String desc, int dims)
+	{
+		add("new " + Type.getType(desc).getClassName());
+		super.visitMultiANewArrayInsn(desc, dims);
+	}
+
+	// of the api version 5, so method instructions forwarded through the older variant by the visitors in front arrive here as well
+	@Override
+	public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf)
+	{
+		if(opcode == Opcodes.INVOKESTATIC && name.equals("valueOf") && owner.startsWith("java/lang/") && isBoxing(owner, desc))
+			add("boxing " + owner.replace('/', '.') + ".valueOf" + desc);
+		super.visitMethodInsn(opcode, owner, name, desc, itf);
+	}
+
+	@Override
+	public void visitEnd()
+	{
+		if(!sites.isEmpty())
+			ModelPlayerAPIEnhancerAllocationReport.add(method, sites);
+		super.visitEnd();
+	}
+
+	private void add(String site)
+	{
+		sites.add(line < 0 ? site : "line " + line + ": " + site);
+	}
+
+	private static boolean isBoxing(String owner, String desc)
+	{
+		Type[] argumentTypes = Type.getArgumentTypes(desc);
+		Type returnType = Type.getReturnType(desc);
+		return argumentTypes.length == 1 && argumentTypes[0].getSort() < Type.ARRAY && returnType.getSort() == Type.OBJECT && returnType.getInternalName().equals(owner);
+	}
+}
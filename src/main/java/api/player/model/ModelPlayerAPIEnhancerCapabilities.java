@@ -0,0 +1,34 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+// implemented by all enhanced classes, each bit stands for the hook with the same index in the method mappings,
+// see ModelPlayerAPIEnhancerMappings.getLocalHook, and includes the hooks of enhanced super classes
+public interface ModelPlayerAPIEnhancerCapabilities
+{
+	// hooks implemented locally and therefore renamed to their local methods
+	int getEnhancerLocalHooks();
+
+	// hooks whose implementations call their super methods and were left in place
+	int getEnhancerSuperCallingHooks();
+
+	// hooks whose implementations only called their super methods and were removed
+	int getEnhancerRemovedHooks();
+}
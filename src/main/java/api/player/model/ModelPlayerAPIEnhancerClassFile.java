@@ -0,0 +1,350 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+public final class ModelPlayerAPIEnhancerClassFile
+{
+	public static final String ModelBiped = "net/minecraft/client/model/ModelBiped";
+	public static final String ObfuscatedModelBiped = "bpx";
+	public static final String ModelRenderer = "net/minecraft/client/model/ModelRenderer";
+	public static final String ObfuscatedModelRenderer = "brs";
+	public static final String Capabilities = "api/player/model/ModelPlayerAPIEnhancerCapabilities";
+
+	// the constant fields holding the hook masks of an enhanced class and the matching capability accessors
+	public static final String[] CapabilityFields = new String[] { "enhancerLocalHooks", "enhancerSuperCallingHooks", "enhancerRemovedHooks" };
+	public static final String[] CapabilityAccessors = new String[] { "getEnhancerLocalHooks", "getEnhancerSuperCallingHooks", "getEnhancerRemovedHooks" };
+
+	private static final String[] candidateMethods = new String[]
+	{
+		"render", "(Lnet/minecraft/entity/Entity;FFFFFF)V",
+		"setRotationAngles", "(FFFFFFLnet/minecraft/entity/Entity;)V",
+		"func_78088_a", "(Lnet/minecraft/entity/Entity;FFFFFF)V",
+		"func_78087_a", "(FFFFFFLnet/minecraft/entity/Entity;)V",
+	};
+
+	private static final String[] obfuscatedCandidateMethods = new String[]
+	{
+		"a", "(Lvg;FFFFFF)V",
+		"a", "(FFFFFFLvg;)V",
+	};
+
+	public static final int ConstantUtf8 = 1;
+	public static final int ConstantInteger = 3;
+	public static final int ConstantFloat = 4;
+	public static final int ConstantLong = 5;
+	public static final int ConstantDouble = 6;
+	public static final int ConstantClass = 7;
+	public static final int ConstantString = 8;
+	public static final int ConstantFieldref = 9;
+	public static final int ConstantMethodref = 10;
+	public static final int ConstantInterfaceMethodref = 11;
+	public static final int ConstantNameAndType = 12;
+	public static final int ConstantMethodHandle = 15;
+	public static final int ConstantMethodType = 16;
+	public static final int ConstantDynamic = 17;
+	public static final int ConstantInvokeDynamic = 18;
+	public static final int ConstantModule = 19;
+	public static final int ConstantPackage = 20;
+
+	private ModelPlayerAPIEnhancerClassFile()
+	{
+	}
+
+	public static boolean mightExtendModelBiped(byte[] bytes, boolean isObfuscated)
+	{
+		int nameOffset = getSuperClassNameOffset(bytes);
+		if(nameOffset < 0)
+			return true;
+		return equalsUtf8(bytes, nameOffset, ModelBiped) || (isObfuscated && equalsUtf8(bytes, nameOffset, ObfuscatedModelBiped));
+	}
+
+	public static boolean mightExtend(byte[] bytes, String superClassName)
+	{
+		int nameOffset = getSuperClassNameOffset(bytes);
+		return nameOffset < 0 || equalsUtf8(bytes, nameOffset, superClassName);
+	}
+
+	public static boolean isArmorModelCandidate(byte[] bytes, boolean isObfuscated)
+	{
+		int nameOffset = getSuperClassNameOffset(bytes);
+		if(nameOffset < 0 || !(equalsUtf8(bytes, nameOffset, ModelBiped) || (isObfuscated && equalsUtf8(bytes, nameOffset, ObfuscatedModelBiped))))
+			return false;
+
+		int[] offsets = getEntryOffsets(bytes);
+		if(offsets == null)
+			return false;
+
+		try
+		{
+			return declaresArmorModelMember(bytes, offsets, isObfuscated);
+		}
+		catch(ArrayIndexOutOfBoundsException aioobe)
+		{
+			return false;
+		}
+	}
+
+	private static boolean declaresArmorModelMember(byte[] bytes, int[] offsets, boolean isObfuscated)
+	{
+		int offset = offsets[offsets.length - 1] + 6;
+		offset += 2 + 2 * readUnsignedShort(bytes, offset);
+
+		int fieldCount = readUnsignedShort(bytes, offset);
+		offset += 2;
+		for(int i = 0; i < fieldCount; i++)
+		{
+			int descOffset = offsets[readUnsignedShort(bytes, offset + 4)];
+			if(isModelRendererDescriptor(bytes, descOffset, isObfuscated))
+				return true;
+			offset = skipMember(bytes, offset);
+		}
+
+		int methodCount = readUnsignedShort(bytes, offset);
+		offset += 2;
+		for(int i = 0; i < methodCount; i++)
+		{
+			int nameIndexOffset = offsets[readUnsignedShort(bytes, offset + 2)];
+			int descOffset = offsets[readUnsignedShort(bytes, offset + 4)];
+			if(isCandidateMethod(bytes, nameIndexOffset, descOffset, candidateMethods) || (isObfuscated && isCandidateMethod(bytes, nameIndexOffset, descOffset, obfuscatedCandidateMethods)))
+				return true;
+			offset = skipMember(bytes, offset);
+		}
+		return false;
+	}
+
+	private static boolean isModelRendererDescriptor(byte[] bytes, int offset, boolean isObfuscated)
+	{
+		int length = readUnsignedShort(bytes, offset + 1);
+		int start = offset + 3;
+		while(length > 0 && bytes[start] == '[')
+		{
+			start++;
+			length--;
+		}
+		return isObjectDescriptor(bytes, start, length, ModelRenderer) || (isObfuscated && isObjectDescriptor(bytes, start, length, ObfuscatedModelRenderer));
+	}
+
+	private static boolean isObjectDescriptor(byte[] bytes, int start, int length, String internalName)
+	{
+		if(length != internalName.length() + 2 || bytes[start] != 'L' || bytes[start + length - 1] != ';')
+			return false;
+		for(int i = 0; i < internalName.length(); i++)
+			if(bytes[start + 1 + i] != internalName.charAt(i))
+				return false;
+		return true;
+	}
+
+	private static boolean isCandidateMethod(byte[] bytes, int nameOffset, int descOffset, String[] methods)
+	{
+		for(int i = 0; i < methods.length; i += 2)
+			if(equalsUtf8(bytes, nameOffset, methods[i]) && equalsUtf8(bytes, descOffset, methods[i + 1]))
+				return true;
+		return false;
+	}
+
+	private static int skipMember(byte[] bytes, int offset)
+	{
+		int attributeCount = readUnsignedShort(bytes, offset + 6);
+		offset += 8;
+		for(int i = 0; i < attributeCount; i++)
+			offset += 6 + readInt(bytes, offset + 2);
+		return offset;
+	}
+
+	public static String readClassName(byte[] bytes)
+	{
+		int end = getConstantPoolEnd(bytes);
+		return end < 0 ? null : readClassName(bytes, readUnsignedShort(bytes, end + 2));
+	}
+
+	public static String readSuperClassName(byte[] bytes)
+	{
+		int end = getConstantPoolEnd(bytes);
+		return end < 0 ? null : readClassName(bytes, readUnsignedShort(bytes, end + 4));
+	}
+
+	public static int getSuperClassNameOffset(byte[] bytes)
+	{
+		int end = getConstantPoolEnd(bytes);
+		if(end < 0)
+			return -1;
+
+		int classOffset = getEntryOffset(bytes, readUnsignedShort(bytes, end + 4));
+		if(classOffset < 0 || bytes[classOffset] != ConstantClass)
+			return -1;
+
+		int nameOffset = getEntryOffset(bytes, readUnsignedShort(bytes, classOffset + 1));
+		if(nameOffset < 0 || bytes[nameOffset] != ConstantUtf8)
+			return -1;
+		return nameOffset;
+	}
+
+	public static int getConstantPoolEnd(byte[] bytes)
+	{
+		if(bytes == null || bytes.length < 10 || readInt(bytes, 0) != 0xCAFEBABE)
+			return -1;
+
+		int count = readUnsignedShort(bytes, 8);
+		int offset = 10;
+		for(int index = 1; index < count; index++)
+		{
+			int tag = bytes[offset];
+			int size = getEntrySize(bytes, offset);
+			if(size < 0)
+				return -1;
+			offset += size;
+			if(tag == ConstantLong || tag == ConstantDouble)
+				index++;
+		}
+		return offset + 6 <= bytes.length ? offset : -1;
+	}
+
+	public static int getEntryOffset(byte[] bytes, int entryIndex)
+	{
+		int count = readUnsignedShort(bytes, 8);
+		if(entryIndex < 1 || entryIndex >= count)
+			return -1;
+
+		int offset = 10;
+		for(int index = 1; index < entryIndex; index++)
+		{
+			int tag = bytes[offset];
+			int size = getEntrySize(bytes, offset);
+			if(size < 0)
+				return -1;
+			offset += size;
+			if(tag == ConstantLong || tag == ConstantDouble)
+				index++;
+		}
+		return offset;
+	}
+
+	public static int[] getEntryOffsets(byte[] bytes)
+	{
+		if(getConstantPoolEnd(bytes) < 0)
+			return null;
+
+		int count = readUnsignedShort(bytes, 8);
+		int[] offsets = new int[count + 1];
+		int offset = 10;
+		for(int index = 1; index < count; index++)
+		{
+			offsets[index] = offset;
+			int tag = bytes[offset];
+			offset += getEntrySize(bytes, offset);
+			if(tag == ConstantLong || tag == ConstantDouble)
+				index++;
+		}
+		offsets[count] = offset;
+		return offsets;
+	}
+
+	public static int getEntrySize(byte[] bytes, int offset)
+	{
+		if(offset >= bytes.length)
+			return -1;
+
+		switch(bytes[offset])
+		{
+			case ConstantUtf8:
+				return offset + 3 <= bytes.length ? 3 + readUnsignedShort(bytes, offset + 1) : -1;
+			case ConstantClass:
+			case ConstantString:
+			case ConstantMethodType:
+			case ConstantModule:
+			case ConstantPackage:
+				return 3;
+			case ConstantMethodHandle:
+				return 4;
+			case ConstantInteger:
+			case ConstantFloat:
+			case ConstantFieldref:
+			case ConstantMethodref:
+			case ConstantInterfaceMethodref:
+			case ConstantNameAndType:
+			case ConstantDynamic:
+			case ConstantInvokeDynamic:
+				return 5;
+			case ConstantLong:
+			case ConstantDouble:
+				return 9;
+			default:
+				return -1;
+		}
+	}
+
+	public static boolean equalsUtf8(byte[] bytes, int offset, String value)
+	{
+		int length = readUnsignedShort(bytes, offset + 1);
+		if(length != value.length())
+			return false;
+
+		// all names compared here are plain ascii so modified utf-8 is a byte per character
+		offset += 3;
+		for(int i = 0; i < length; i++)
+			if(bytes[offset + i] != value.charAt(i))
+				return false;
+		return true;
+	}
+
+	public static String readUtf8(byte[] bytes, int offset)
+	{
+		int length = readUnsignedShort(bytes, offset + 1);
+		int end = offset + 3 + length;
+		char[] chars = new char[length];
+		int count = 0;
+		for(int i = offset + 3; i < end; )
+		{
+			int c = bytes[i++] & 0xFF;
+			if(c < 0x80)
+				chars[count++] = (char)c;
+			else if(c < 0xE0)
+				chars[count++] = (char)(((c & 0x1F) << 6) | (bytes[i++] & 0x3F));
+			else
+			{
+				chars[count++] = (char)(((c & 0x0F) << 12) | ((bytes[i] & 0x3F) << 6) | (bytes[i + 1] & 0x3F));
+				i += 2;
+			}
+		}
+		return new String(chars, 0, count);
+	}
+
+	public static String readClassName(byte[] bytes, int classIndex)
+	{
+		int classOffset = getEntryOffset(bytes, classIndex);
+		if(classOffset < 0 || bytes[classOffset] != ConstantClass)
+			return null;
+
+		int nameOffset = getEntryOffset(bytes, readUnsignedShort(bytes, classOffset + 1));
+		if(nameOffset < 0 || bytes[nameOffset] != ConstantUtf8)
+			return null;
+		return readUtf8(bytes, nameOffset);
+	}
+
+	public static int readUnsignedShort(byte[] bytes, int offset)
+	{
+		return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+	}
+
+	public static int readInt(byte[] bytes, int offset)
+	{
+		return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16) | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+	}
+}
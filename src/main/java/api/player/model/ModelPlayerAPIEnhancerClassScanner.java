@@ -19,45 +19,106 @@
 
 package api.player.model;
 
-import java.io.*;
 import java.util.*;
 
 import org.objectweb.asm.*;
 
 public class ModelPlayerAPIEnhancerClassScanner extends ClassVisitor
 {
-	public static Set<String> scan(byte[] bytes)
+	public static ModelPlayerAPIEnhancerClassScanner scan(byte[] bytes, boolean isObfuscated)
 	{
-		try
-		{
-			ByteArrayInputStream in = new ByteArrayInputStream(bytes);
-			ClassReader cr = new ClassReader(in);
-			ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
-			ModelPlayerAPIEnhancerClassScanner p = new ModelPlayerAPIEnhancerClassScanner(cw);
+		return scan(new ClassReader(bytes), ModelPlayerAPIEnhancerMappings.get(isObfuscated));
+	}
 
-			cr.accept(p, 0);
-			return p.scanned;
-		}
-		catch(IOException ioe)
-		{
-			throw new RuntimeException(ioe);
-		}
+	// only looks for super calls, so nothing is written and neither debug information nor frames are read
+	public static ModelPlayerAPIEnhancerClassScanner scan(ClassReader cr, ModelPlayerAPIEnhancerMappings mappings)
+	{
+		long start = ModelPlayerAPIEnhancerTrace.enabled ? System.nanoTime() : 0;
+		ModelPlayerAPIEnhancerClassScanner p = new ModelPlayerAPIEnhancerClassScanner(null, mappings);
+
+		cr.accept(p, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		if(ModelPlayerAPIEnhancerTrace.enabled)
+			ModelPlayerAPIEnhancerTrace.add("scan", cr.getClassName().replace('/', '.'), start);
+		return p;
 	}
 
-	public ModelPlayerAPIEnhancerClassScanner(ClassVisitor classVisitor)
+	public ModelPlayerAPIEnhancerClassScanner(ClassVisitor classVisitor, ModelPlayerAPIEnhancerMappings mappings)
 	{
 		super(262144, classVisitor);
-		this.scanned = new HashSet<String>();
+		this.mappings = mappings;
+	}
+
+	final ModelPlayerAPIEnhancerMappings mappings;
+	String superClassName;
+	int implementedHooks;
+	int superCallingHooks;
+	int forwardingHooks;
+	private int[] superReferencedHooks = new int[16];
+	private int methodCount;
+
+	// the hooks whose implementations call their super methods
+	public int getSuperCallingHooks()
+	{
+		return superCallingHooks;
 	}
 
-	private final Set<String> scanned;
+	// the hooks implemented by instance methods
+	public int getImplementedHooks()
+	{
+		return implementedHooks;
+	}
+
+	// the hooks whose implementations keep their names because they call their super methods
+	public int getKeptHooks()
+	{
+		return implementedHooks & superCallingHooks & ~forwardingHooks;
+	}
+
+	// the hooks whose implementations are renamed to their local names because they don't call their super methods
+	public int getRenamedHooks()
+	{
+		return implementedHooks & ~superCallingHooks;
+	}
+
+	// the hooks whose implementations do nothing but call their super methods with the same arguments
+	public int getForwardingHooks()
+	{
+		return forwardingHooks;
+	}
+
+	// the hooks the method with the given index in class file order references with invokespecial on the super class
+	public int getSuperReferencedHooks(int method)
+	{
+		return method < methodCount ? superReferencedHooks[method] : 0;
+	}
+
+	void addSuperReferencedHook(int method, int hook)
+	{
+		superReferencedHooks[method] |= 1 << hook;
+	}
+
+	@Override
+	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces)
+	{
+		superClassName = superName;
+		super.visit(version, access, name, signature, superName, interfaces);
+	}
 
 	@Override
 	public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions)
 	{
+		int method = methodCount++;
+		if(method == superReferencedHooks.length)
+			superReferencedHooks = Arrays.copyOf(superReferencedHooks, method * 2);
+
 		MethodVisitor visitor = super.visitMethod(access, name, desc, signature, exceptions);
-		if((access & Opcodes.ACC_STATIC) == 0 && !name.equals("<init>"))
-			visitor = new ModelPlayerAPIEnhancerMethodScanner(visitor, name, desc, scanned);
+		if((access & Opcodes.ACC_STATIC) == 0 && !name.equals("<init>") && !name.equals("<clinit>"))
+		{
+			int hook = mappings.getHook(name, desc);
+			if(hook >= 0)
+				implementedHooks |= 1 << hook;
+			visitor = new ModelPlayerAPIEnhancerMethodScanner(visitor, access, name, desc, hook, method, this);
+		}
 		return visitor;
 	}
 }
@@ -19,49 +19,122 @@
 
 package api.player.model;
 
-import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.objectweb.asm.*;
 import org.apache.logging.log4j.*;
 
 public class ModelPlayerAPIEnhancerClassVisitor extends ClassVisitor
 {
+	// optional changes that add code to the enhanced classes
+	public static final int RotationGuard = 1;
+	public static final int GetterCache = 2;
+	public static final int AllocationReport = 4;
+	public static final int AllocationHoisting = 8;
+	public static final int RenderProfiling = 16;
+	public static final int AllocationSampling = 32;
+	public static final int FlightRecording = 64;
+
 	public static byte[] transform(byte[] bytes, boolean isObfuscated)
 	{
-		try
-		{
-			ByteArrayInputStream in = new ByteArrayInputStream(bytes);
-			ClassReader cr = new ClassReader(in);
-			ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
-			ModelPlayerAPIEnhancerClassVisitor p = new ModelPlayerAPIEnhancerClassVisitor(cw, isObfuscated, bytes);
+		return transform(bytes, isObfuscated, null);
+	}
 
-			cr.accept(p, 0);
+	public static byte[] transform(byte[] bytes, boolean isObfuscated, String indirectSuperClassName)
+	{
+		return transform(bytes, isObfuscated, indirectSuperClassName, 0);
+	}
 
-			byte[] result = bytes;
-			if (p.enhancableClassName != null)
-				result = cw.toByteArray();
+	public static byte[] transform(byte[] bytes, boolean isObfuscated, String indirectSuperClassName, int features)
+	{
+		if(bytes == null)
+			return bytes;
 
-			in.close();
-			return result;
-		}
-		catch(IOException ioe)
+		ModelPlayerAPIEnhancerFlightRecorder.EnhancementEvent event = ModelPlayerAPIEnhancerFlightRecorder.beginEnhancement();
+		if(indirectSuperClassName != null ? !ModelPlayerAPIEnhancerClassFile.mightExtend(bytes, indirectSuperClassName) : !ModelPlayerAPIEnhancerClassFile.mightExtendModelBiped(bytes, isObfuscated))
 		{
-			throw new RuntimeException(ioe);
+			if(isDetailed())
+				detail("leaves class '%s' untouched because it extends the unrelated class '%s'", ModelPlayerAPIEnhancerClassFile.readClassName(bytes).replace('/', '.'), ModelPlayerAPIEnhancerClassFile.readSuperClassName(bytes).replace('/', '.'));
+			ModelPlayerAPIEnhancerFlightRecorder.commitEnhancement(event, bytes, 0);
+			return bytes;
 		}
+
+		// the scanner reuses the reader, so the class bytes are only parsed once, and the writer shares its constant pool
+		// so methods that need no changes are copied as they are including their maximums and stack map frames
+		ClassReader cr = new ClassReader(bytes);
+		ClassWriter cw = new ClassWriter(cr, 0);
+		ModelPlayerAPIEnhancerClassVisitor p = new ModelPlayerAPIEnhancerClassVisitor(cw, isObfuscated, indirectSuperClassName, cr, features);
+
+		cr.accept(p, 0);
+
+		byte[] result = bytes;
+		if (p.enhancableClassName != null)
+			result = cw.toByteArray();
+		ModelPlayerAPIEnhancerFlightRecorder.commitEnhancement(event, bytes, Integer.bitCount(p.localHooks));
+		return result;
 	}
 
-	public ModelPlayerAPIEnhancerClassVisitor(ClassVisitor classVisitor, boolean isObfuscated, byte[] bytes)
+	public ModelPlayerAPIEnhancerClassVisitor(ClassVisitor classVisitor, boolean isObfuscated, String indirectSuperClassName, ClassReader reader)
+	{
+		this(classVisitor, isObfuscated, indirectSuperClassName, reader, 0);
+	}
+
+	public ModelPlayerAPIEnhancerClassVisitor(ClassVisitor classVisitor, boolean isObfuscated, String indirectSuperClassName, ClassReader reader, int features)
 	{
 		super(262144, classVisitor);
 		this.isObfuscated = isObfuscated;
-		this.bytes = bytes;
+		this.indirectSuperClassName = indirectSuperClassName;
+		this.reader = reader;
+		this.mappings = ModelPlayerAPIEnhancerMappings.get(isObfuscated);
+		this.rotationGuardHook = (features & RotationGuard) != 0 ? mappings.getLocalHook(ModelPlayerAPIEnhancerRotationGuardVisitor.LocalName) : -1;
+		this.getterCacheHooks = (features & GetterCache) != 0 ? getLocalHooks(mappings, ModelPlayerAPIEnhancerGetterCache.LocalNames) : 0;
+		this.allocationReportHooks = (features & AllocationReport) != 0 ? getLocalHooks(mappings, ModelPlayerAPIEnhancerAllocationVisitor.LocalNames) : 0;
+		this.allocationHoistingHooks = (features & AllocationHoisting) != 0 ? getLocalHooks(mappings, ModelPlayerAPIEnhancerHoistingVisitor.LocalNames) : 0;
+		this.renderProfilingHooks = (features & RenderProfiling) != 0 ? getLocalHooks(mappings, ModelPlayerAPIEnhancerProbeVisitor.LocalNames) : 0;
+		this.allocationSamplingHooks = (features & AllocationSampling) != 0 ? getLocalHooks(mappings, ModelPlayerAPIEnhancerProbeVisitor.LocalNames) : 0;
+		this.flightRecordingHooks = (features & FlightRecording) != 0 ? getLocalHooks(mappings, ModelPlayerAPIEnhancerFlightRecorder.LocalNames) : 0;
+	}
+
+	public static int getLocalHooks(ModelPlayerAPIEnhancerMappings mappings, String[] localNames)
+	{
+		int hooks = 0;
+		for(String localName : localNames)
+		{
+			int hook = mappings.getLocalHook(localName);
+			if(hook >= 0)
+				hooks |= 1 << hook;
+		}
+		return hooks;
 	}
 
 	private final boolean isObfuscated;
+	private final String indirectSuperClassName;
 	private String enhancableClassName;
-	private final byte[] bytes;
-	private Set<String> superCallingMethods;
+	private final ClassReader reader;
+	private final ModelPlayerAPIEnhancerMappings mappings;
+	private final int rotationGuardHook;
+	private final int getterCacheHooks;
+	private final int allocationReportHooks;
+	private final int allocationHoistingHooks;
+	private final int renderProfilingHooks;
+	private final int allocationSamplingHooks;
+	private final int flightRecordingHooks;
+	private ModelPlayerAPIEnhancerClassScanner scanner;
+	private ModelPlayerAPIEnhancerHoistingScanner hoistingScanner;
+	private int superCallingHooks;
+	private int methodCount;
+	private int localHooks;
+	private int removedHooks;
+	private String className;
+	private int version;
+	private String rotationGuardEntityDesc;
+	private final List<Object[]> cachedGetters = new ArrayList<Object[]>();
+	private final List<String> hoistedArrays = new ArrayList<String>();
+	private final List<String> probeFields = new ArrayList<String>();
+	private final List<String> histograms = new ArrayList<String>();
+	private final List<ModelPlayerAPIEnhancerMethodVisitor> superCallVisitors = new ArrayList<ModelPlayerAPIEnhancerMethodVisitor>();
+	private boolean staticInitializer;
 	private String originalSuperClassName;
 	private String enhancerSuperClassName;
 
@@ -73,11 +146,32 @@ public class ModelPlayerAPIEnhancerClassVisitor extends ClassVisitor
 			enhancableClassName = name.replace('/', '.');
 			originalSuperClassName = superName;
 			enhancerSuperClassName = superName = superName.equals("bpx") ? "api/player/model/ModelPlayerArmor" : "api/player/model/ModelPlayerArmor";
-			info("enhances class '%s' to extend class '%s' instead of class '%s'", enhancableClassName, enhancerSuperClassName.replace('/', '.'), originalSuperClassName.replace('/', '.'));
-			superCallingMethods = ModelPlayerAPIEnhancerClassScanner.scan(bytes);
+			if(isDetailed())
+				detail("enhances class '%s' to extend class '%s' instead of class '%s'", enhancableClassName, enhancerSuperClassName.replace('/', '.'), originalSuperClassName.replace('/', '.'));
+			scanner = ModelPlayerAPIEnhancerClassScanner.scan(reader, mappings);
+			superCallingHooks = scanner.getSuperCallingHooks();
+		}
+		else if(indirectSuperClassName != null && superName.equals(indirectSuperClassName))
+		{
+			enhancableClassName = name.replace('/', '.');
+			originalSuperClassName = enhancerSuperClassName = superName;
+			if(isDetailed())
+				detail("enhances class '%s' that extends the model biped class through the enhanced class '%s'", enhancableClassName, superName.replace('/', '.'));
+			scanner = ModelPlayerAPIEnhancerClassScanner.scan(reader, mappings);
+			superCallingHooks = scanner.getSuperCallingHooks();
+		}
+		else if(isDetailed())
+			detail("leaves class '%s' untouched because it extends the unrelated class '%s'", name.replace('/', '.'), superName.replace('/', '.'));
+
+		if(enhancableClassName != null)
+		{
+			className = name;
+			this.version = version;
+			interfaces = interfaces == null ? new String[1] : Arrays.copyOf(interfaces, interfaces.length + 1);
+			interfaces[interfaces.length - 1] = ModelPlayerAPIEnhancerClassFile.Capabilities;
+			if(allocationHoistingHooks != 0)
+				hoistingScanner = ModelPlayerAPIEnhancerHoistingScanner.scan(reader, mappings, allocationHoistingHooks);
 		}
-		else
-			info("leaves class '%s' untouched because it extends the unrelated class '%s'", name.replace('/', '.'), superName.replace('/', '.'));
 
 		super.visit(version, access, name, signature, superName, interfaces);
 	}
@@ -85,506 +179,312 @@ public class ModelPlayerAPIEnhancerClassVisitor extends ClassVisitor
 	@Override
 	public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions)
 	{
-		if(enhancableClassName != null && !name.equals("<cinit>") && !name.equals("<clinit>"))
+		int method = methodCount++;
+		if(enhancableClassName != null && renderProfilingHooks != 0 && name.equals("<clinit>"))
 		{
-			if(name.equals("<init>"))
+			// the histograms of the render profiler are created before anything else of the class runs
+			staticInitializer = true;
+			return new MethodVisitor(262144, super.visitMethod(access, name, desc, signature, exceptions))
 			{
-				info("modifies constructor '%s%s'", enhancableClassName, desc);
-				return new ModelPlayerAPIEnhancerConstructorVisitor(super.visitMethod(access, name, desc, signature, exceptions), isObfuscated);
-			}
-			else if((access & Opcodes.ACC_STATIC) == 0)
-			{
-				return new ModelPlayerAPIEnhancerMethodVisitor(super.visitMethod(access, getMethodName(name, desc), desc, signature, exceptions), isObfuscated, enhancableClassName, originalSuperClassName, enhancerSuperClassName, superCallingMethods, name, desc);
-			}
-		}
-		return super.visitMethod(access, name, desc, signature, exceptions);
-	}
-
-	private String getMethodName(String name, String desc)
-	{
-		if(isObfuscated)
-		{
-			if(name.equals("a") && desc.equals("(Lvo;)Lbrs;"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method ", enhancableClassName, name, desc);
-					return name;
-				}
-				else
-				{
-					info("renames method '%s.%s%s' to 'localGetArmForSide' because it actually is 'getArmForSide' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localGetArmForSide";
-				}
-			}
-			else if(name.equals("func_187074_a") && desc.equals("(Lnet/minecraft/util/EnumHandSide;)Lnet/minecraft/client/model/ModelRenderer;"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
+				@Override
+				public void visitCode()
 				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-					return name;
+					super.visitCode();
+					super.visitMethodInsn(Opcodes.INVOKESTATIC, className, ModelPlayerAPIEnhancerProbeVisitor.HistogramInitializer, "()V", false);
 				}
-				else
-				{
-					info("renames method '%s.%s%s' to 'localGetArmForSide' because it actually is 'getArmForSide' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localGetArmForSide";
-				}
-			}
-		}
-		else if(name.equals("getArmForSide") && desc.equals("(Lnet/minecraft/util/EnumHandSide;)Lnet/minecraft/client/model/ModelRenderer;"))
-		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-				return name;
-			}
-			else
-			{
-				info("renames method '%s.%s%s' to 'localGetArmForSide' because it doesn't call its super method", enhancableClassName, name, desc);
-				return "localGetArmForSide";
-			}
+			};
 		}
 
-		if(isObfuscated)
-		{
-			if(name.equals("a") && desc.equals("(Lvg;)Lvo;"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method ", enhancableClassName, name, desc);
-					return name;
-				}
-				else
-				{
-					info("renames method '%s.%s%s' to 'localGetMainHand' because it actually is 'getMainHand' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localGetMainHand";
-				}
-			}
-			else if(name.equals("func_187072_a") && desc.equals("(Lnet/minecraft/entity/Entity;)Lnet/minecraft/util/EnumHandSide;"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-					return name;
-				}
-				else
-				{
-					info("renames method '%s.%s%s' to 'localGetMainHand' because it actually is 'getMainHand' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localGetMainHand";
-				}
-			}
-		}
-		else if(name.equals("getMainHand") && desc.equals("(Lnet/minecraft/entity/Entity;)Lnet/minecraft/util/EnumHandSide;"))
+		if(enhancableClassName != null && !name.equals("<cinit>") && !name.equals("<clinit>"))
 		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-				return name;
-			}
-			else
+			if(name.equals("<init>"))
 			{
-				info("renames method '%s.%s%s' to 'localGetMainHand' because it doesn't call its super method", enhancableClassName, name, desc);
-				return "localGetMainHand";
-			}
-		}
+				if(originalSuperClassName.equals(enhancerSuperClassName))
+					return super.visitMethod(access, name, desc, signature, exceptions);
 
-		if(isObfuscated)
-		{
-			if(name.equals("a") && desc.equals("(Ljava/util/Random;)Lbrs;"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method ", enhancableClassName, name, desc);
-					return name;
-				}
-				else
-				{
-					info("renames method '%s.%s%s' to 'localGetRandomModelBox' because it actually is 'getRandomModelBox' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localGetRandomModelBox";
-				}
+				detail("modifies constructor '%s%s'", enhancableClassName, desc);
+				return new ModelPlayerAPIEnhancerConstructorVisitor(super.visitMethod(access, name, desc, signature, exceptions), isObfuscated);
 			}
-			else if(name.equals("func_85181_a") && desc.equals("(Ljava/util/Random;)Lnet/minecraft/client/model/ModelRenderer;"))
+			else if((access & Opcodes.ACC_STATIC) == 0)
 			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-					return name;
-				}
-				else
+				int hook = mappings.getHook(name, desc);
+				if(hook >= 0 && (scanner.getForwardingHooks() & (1 << hook)) != 0)
 				{
-					info("renames method '%s.%s%s' to 'localGetRandomModelBox' because it actually is 'getRandomModelBox' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localGetRandomModelBox";
+					// the inherited method does exactly the same without the additional call
+					detail("removes method '%s.%s%s' because it only calls its super method", enhancableClassName, name, desc);
+					removedHooks |= 1 << hook;
+					return null;
 				}
-			}
-		}
-		else if(name.equals("getRandomModelBox") && desc.equals("(Ljava/util/Random;)Lnet/minecraft/client/model/ModelRenderer;"))
-		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-				return name;
-			}
-			else
-			{
-				info("renames method '%s.%s%s' to 'localGetRandomModelBox' because it doesn't call its super method", enhancableClassName, name, desc);
-				return "localGetRandomModelBox";
-			}
-		}
 
-		if(isObfuscated)
-		{
-			if(name.equals("a") && desc.equals("(Ljava/lang/String;)Lbrt;"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
+				String methodName = getMethodName(name, desc, hook);
+				if(!methodName.equals(name))
+					localHooks |= 1 << hook;
+				boolean concrete = (access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0;
+				MethodVisitor visitor;
+				if(hook >= 0 && (getterCacheHooks & (1 << hook)) != 0 && !methodName.equals(name) && concrete && ModelPlayerAPIEnhancerGetterCache.isCachable(desc))
 				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method ", enhancableClassName, name, desc);
-					return name;
+					detail("caches the results of method '%s.%s%s' per frame", enhancableClassName, name, desc);
+					cachedGetters.add(new Object[] { access, methodName, desc });
+					visitor = super.visitMethod(ModelPlayerAPIEnhancerGetterCache.getUncachedAccess(access), ModelPlayerAPIEnhancerGetterCache.getUncachedName(methodName), desc, signature, exceptions);
 				}
 				else
-				{
-					info("renames method '%s.%s%s' to 'localGetTextureOffset' because it actually is 'getTextureOffset' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localGetTextureOffset";
-				}
-			}
-			else if(name.equals("func_78084_a") && desc.equals("(Ljava/lang/String;)Lnet/minecraft/client/model/TextureOffset;"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-					return name;
-				}
-				else
-				{
-					info("renames method '%s.%s%s' to 'localGetTextureOffset' because it actually is 'getTextureOffset' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localGetTextureOffset";
-				}
-			}
-		}
-		else if(name.equals("getTextureOffset") && desc.equals("(Ljava/lang/String;)Lnet/minecraft/client/model/TextureOffset;"))
-		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-				return name;
-			}
-			else
-			{
-				info("renames method '%s.%s%s' to 'localGetTextureOffset' because it doesn't call its super method", enhancableClassName, name, desc);
-				return "localGetTextureOffset";
-			}
-		}
+					visitor = super.visitMethod(access, methodName, desc, signature, exceptions);
 
-		if(isObfuscated)
-		{
-			if(name.equals("a") && desc.equals("(FLvo;)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method ", enhancableClassName, name, desc);
-					return name;
-				}
-				else
-				{
-					info("renames method '%s.%s%s' to 'localPostRenderArm' because it actually is 'postRenderArm' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localPostRenderArm";
+				// right in front of the writer, so the early return of the rotation guard is measured as well, and the
+				// allocation sampler inside the timing probe, so the measured times don't include the sampling
+				if(hook >= 0 && !methodName.equals(name) && concrete)
+				{
+					if((allocationSamplingHooks & (1 << hook)) != 0)
+					{
+						detail("samples the allocated bytes per call of method '%s.%s%s'", enhancableClassName, name, desc);
+						visitor = probe(visitor, methodName, ModelPlayerAPIEnhancerProbeVisitor.AllocationSampler);
+					}
+					if((renderProfilingHooks & (1 << hook)) != 0)
+					{
+						detail("measures the time per call of method '%s.%s%s'", enhancableClassName, name, desc);
+						visitor = probe(visitor, methodName, ModelPlayerAPIEnhancerProbeVisitor.RenderProfiler);
+					}
+					if((flightRecordingHooks & (1 << hook)) != 0)
+					{
+						detail("records sampled calls of method '%s.%s%s' with the flight recorder", enhancableClassName, name, desc);
+						visitor = probe(visitor, methodName, ModelPlayerAPIEnhancerProbeVisitor.FlightRecorder);
+					}
 				}
-			}
-			else if(name.equals("func_187073_a") && desc.equals("(FLnet/minecraft/util/EnumHandSide;)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-					return name;
-				}
-				else
-				{
-					info("renames method '%s.%s%s' to 'localPostRenderArm' because it actually is 'postRenderArm' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localPostRenderArm";
-				}
-			}
-		}
-		else if(name.equals("postRenderArm") && desc.equals("(FLnet/minecraft/util/EnumHandSide;)V"))
-		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-				return name;
-			}
-			else
-			{
-				info("renames method '%s.%s%s' to 'localPostRenderArm' because it doesn't call its super method", enhancableClassName, name, desc);
-				return "localPostRenderArm";
-			}
-		}
 
-		if(isObfuscated)
-		{
-			if(name.equals("a") && desc.equals("(Lvg;FFFFFF)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method ", enhancableClassName, name, desc);
-					return name;
-				}
-				else
-				{
-					info("renames method '%s.%s%s' to 'localRender' because it actually is 'render' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localRender";
-				}
-			}
-			else if(name.equals("func_78088_a") && desc.equals("(Lnet/minecraft/entity/Entity;FFFFFF)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-					return name;
-				}
-				else
+				// only local implementations are guarded, skipping super calls would skip the player animation hooks as well
+				if(hook >= 0 && hook == rotationGuardHook && !methodName.equals(name) && concrete)
 				{
-					info("renames method '%s.%s%s' to 'localRender' because it actually is 'render' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localRender";
+					detail("guards method '%s.%s%s' against being called again with the same arguments", enhancableClassName, name, desc);
+					rotationGuardEntityDesc = ModelPlayerAPIEnhancerRotationGuardVisitor.getEntityDesc(desc);
+					visitor = new ModelPlayerAPIEnhancerRotationGuardVisitor(visitor, className, desc, (version & 0xFFFF) >= Opcodes.V1_6);
 				}
-			}
-		}
-		else if(name.equals("render") && desc.equals("(Lnet/minecraft/entity/Entity;FFFFFF)V"))
-		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-				return name;
-			}
-			else
-			{
-				info("renames method '%s.%s%s' to 'localRender' because it doesn't call its super method", enhancableClassName, name, desc);
-				return "localRender";
-			}
-		}
 
-		if(isObfuscated)
-		{
-			if(name.equals("a") && desc.equals("(Lvp;FFF)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method ", enhancableClassName, name, desc);
-					return name;
-				}
-				else
-				{
-					info("renames method '%s.%s%s' to 'localSetLivingAnimations' because it actually is 'setLivingAnimations' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localSetLivingAnimations";
-				}
-			}
-			else if(name.equals("func_78086_a") && desc.equals("(Lnet/minecraft/entity/EntityLivingBase;FFF)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-					return name;
-				}
-				else
-				{
-					info("renames method '%s.%s%s' to 'localSetLivingAnimations' because it actually is 'setLivingAnimations' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localSetLivingAnimations";
-				}
-			}
-		}
-		else if(name.equals("setLivingAnimations") && desc.equals("(Lnet/minecraft/entity/EntityLivingBase;FFF)V"))
-		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-				return name;
-			}
-			else
-			{
-				info("renames method '%s.%s%s' to 'localSetLivingAnimations' because it doesn't call its super method", enhancableClassName, name, desc);
-				return "localSetLivingAnimations";
-			}
-		}
+				if(hook >= 0 && (allocationReportHooks & (1 << hook)) != 0 && concrete)
+					visitor = new ModelPlayerAPIEnhancerAllocationVisitor(visitor, enhancableClassName, name, desc);
 
-		if(isObfuscated)
-		{
-			if(name.equals("a") && desc.equals("(Lbqf;)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
+				// in front of the allocation report, which then only lists the arrays that are still created on every call
+				long hoistableArrays = hoistingScanner != null ? hoistingScanner.getHoistableArrays(method) : 0;
+				if(hoistableArrays != 0)
 				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method ", enhancableClassName, name, desc);
-					return name;
+					detail("reuses %d arrays created by method '%s.%s%s' across its calls", Long.bitCount(hoistableArrays), enhancableClassName, name, desc);
+					visitor = new ModelPlayerAPIEnhancerHoistingVisitor(visitor, className, hoistableArrays, hoistedArrays);
 				}
-				else
-				{
-					info("renames method '%s.%s%s' to 'localSetModelAttributes' because it actually is 'setModelAttributes' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localSetModelAttributes";
-				}
-			}
-			else if(name.equals("func_178686_a") && desc.equals("(Lnet/minecraft/client/model/ModelBase;)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-					return name;
-				}
-				else
-				{
-					info("renames method '%s.%s%s' to 'localSetModelAttributes' because it actually is 'setModelAttributes' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localSetModelAttributes";
-				}
-			}
-		}
-		else if(name.equals("setModelAttributes") && desc.equals("(Lnet/minecraft/client/model/ModelBase;)V"))
-		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-				return name;
-			}
-			else
-			{
-				info("renames method '%s.%s%s' to 'localSetModelAttributes' because it doesn't call its super method", enhancableClassName, name, desc);
-				return "localSetModelAttributes";
+
+				// only methods with super references to retarget need their code to be visited
+				if((scanner.getSuperReferencedHooks(method) & ~superCallingHooks) == 0)
+					return visitor;
+				ModelPlayerAPIEnhancerMethodVisitor superCallVisitor = new ModelPlayerAPIEnhancerMethodVisitor(visitor, enhancableClassName, originalSuperClassName, enhancerSuperClassName, mappings, superCallingHooks, name, desc);
+				superCallVisitors.add(superCallVisitor);
+				return superCallVisitor;
 			}
 		}
+		return super.visitMethod(access, name, desc, signature, exceptions);
+	}
 
-		if(isObfuscated)
+	@Override
+	public void visitEnd()
+	{
+		if(enhancableClassName != null)
 		{
-			if(name.equals("a") && desc.equals("(FFFFFFLvg;)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method ", enhancableClassName, name, desc);
-					return name;
-				}
-				else
-				{
-					info("renames method '%s.%s%s' to 'localSetRotationAngles' because it actually is 'setRotationAngles' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localSetRotationAngles";
-				}
-			}
-			else if(name.equals("func_78087_a") && desc.equals("(FFFFFFLnet/minecraft/entity/Entity;)V"))
+			int superCalls = 0;
+			for(ModelPlayerAPIEnhancerMethodVisitor superCallVisitor : superCallVisitors)
+				superCalls += superCallVisitor.getSuperCalls();
+			summary(enhancableClassName, localHooks, superCallingHooks & ~removedHooks, removedHooks, superCalls);
+			int[] masks = new int[] { localHooks, superCallingHooks & ~removedHooks, removedHooks };
+			for(int i = 0; i < masks.length; i++)
+				addCapability(ModelPlayerAPIEnhancerClassFile.CapabilityFields[i], ModelPlayerAPIEnhancerClassFile.CapabilityAccessors[i], masks[i]);
+
+			for(Object[] getter : cachedGetters)
+				ModelPlayerAPIEnhancerGetterCache.generate(cv, className, (Integer)getter[0], (String)getter[1], (String)getter[2], (version & 0xFFFF) >= Opcodes.V1_6);
+
+			if(rotationGuardEntityDesc != null)
 			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-					return name;
-				}
-				else
-				{
-					info("renames method '%s.%s%s' to 'localSetRotationAngles' because it actually is 'setRotationAngles' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localSetRotationAngles";
-				}
+				int access = Opcodes.ACC_PRIVATE | Opcodes.ACC_TRANSIENT | Opcodes.ACC_SYNTHETIC;
+				super.visitField(access, ModelPlayerAPIEnhancerRotationGuardVisitor.EntityField, rotationGuardEntityDesc, null, null).visitEnd();
+				for(int i = 0; i < ModelPlayerAPIEnhancerRotationGuardVisitor.ArgumentCount; i++)
+					super.visitField(access, ModelPlayerAPIEnhancerRotationGuardVisitor.ArgumentField + i, "F", null, null).visitEnd();
 			}
+
+			for(String probeField : probeFields)
+				super.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_TRANSIENT | Opcodes.ACC_SYNTHETIC, probeField, "J", null, null).visitEnd();
+
+			if(staticInitializer || !histograms.isEmpty())
+				addHistograms();
+
+			for(int i = 0; i < hoistedArrays.size(); i++)
+				super.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_TRANSIENT | Opcodes.ACC_SYNTHETIC, ModelPlayerAPIEnhancerHoistingVisitor.Field + i, hoistedArrays.get(i), null, null).visitEnd();
 		}
-		else if(name.equals("setRotationAngles") && desc.equals("(FFFFFFLnet/minecraft/entity/Entity;)V"))
+		super.visitEnd();
+	}
+
+	private MethodVisitor probe(MethodVisitor visitor, String localName, String probe)
+	{
+		probeFields.add(ModelPlayerAPIEnhancerProbeVisitor.getField(localName, probe));
+		if(probe.equals(ModelPlayerAPIEnhancerProbeVisitor.RenderProfiler))
+			histograms.add(localName);
+		return new ModelPlayerAPIEnhancerProbeVisitor(visitor, className, enhancableClassName, localName, probe);
+	}
+
+	// a static field per profiled method holding its histogram and the method creating them, called from the static initializer
+	private void addHistograms()
+	{
+		for(String localName : histograms)
+			super.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_TRANSIENT | Opcodes.ACC_SYNTHETIC, ModelPlayerAPIEnhancerProbeVisitor.getHistogramField(localName), "[J", null, null).visitEnd();
+
+		MethodVisitor mv = super.visitMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC, ModelPlayerAPIEnhancerProbeVisitor.HistogramInitializer, "()V", null, null);
+		mv.visitCode();
+		for(String localName : histograms)
 		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-				return name;
-			}
-			else
-			{
-				info("renames method '%s.%s%s' to 'localSetRotationAngles' because it doesn't call its super method", enhancableClassName, name, desc);
-				return "localSetRotationAngles";
-			}
+			mv.visitLdcInsn(ModelPlayerAPIEnhancerProbeVisitor.getMethod(enhancableClassName, localName));
+			mv.visitMethodInsn(Opcodes.INVOKESTATIC, ModelPlayerAPIEnhancerProbeVisitor.RenderProfiler, "create", "(Ljava/lang/String;)[J", false);
+			mv.visitFieldInsn(Opcodes.PUTSTATIC, className, ModelPlayerAPIEnhancerProbeVisitor.getHistogramField(localName), "[J");
 		}
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(histograms.isEmpty() ? 0 : 1, 0);
+		mv.visitEnd();
+
+		if(staticInitializer)
+			return;
 
-		if(isObfuscated)
+		mv = super.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+		mv.visitCode();
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, className, ModelPlayerAPIEnhancerProbeVisitor.HistogramInitializer, "()V", false);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	// a constant field and its accessor, which adds the mask of the super class in case that one is enhanced as well
+	private void addCapability(String fieldName, String accessorName, int mask)
+	{
+		boolean indirect = originalSuperClassName.equals(enhancerSuperClassName);
+		super.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC, fieldName, "I", null, mask).visitEnd();
+
+		MethodVisitor mv = super.visitMethod(Opcodes.ACC_PUBLIC, accessorName, "()I", null, null);
+		mv.visitCode();
+		mv.visitFieldInsn(Opcodes.GETSTATIC, className, fieldName, "I");
+		if(indirect)
 		{
-			if(name.equals("a") && desc.equals("(Ljava/lang/String;II)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method ", enhancableClassName, name, desc);
-					return name;
-				}
-				else
-				{
-					info("renames method '%s.%s%s' to 'localSetTextureOffset' because it actually is 'setTextureOffset' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localSetTextureOffset";
-				}
-			}
-			else if(name.equals("func_78085_a") && desc.equals("(Ljava/lang/String;II)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-					return name;
-				}
-				else
-				{
-					info("renames method '%s.%s%s' to 'localSetTextureOffset' because it actually is 'setTextureOffset' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localSetTextureOffset";
-				}
-			}
+			mv.visitVarInsn(Opcodes.ALOAD, 0);
+			mv.visitMethodInsn(Opcodes.INVOKESPECIAL, enhancerSuperClassName, accessorName, "()I", false);
+			mv.visitInsn(Opcodes.IOR);
 		}
-		else if(name.equals("setTextureOffset") && desc.equals("(Ljava/lang/String;II)V"))
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitMaxs(indirect ? 2 : 1, 1);
+		mv.visitEnd();
+	}
+
+	private String getMethodName(String name, String desc, int hook)
+	{
+		if(hook < 0)
+			return name;
+
+		if((superCallingHooks & (1 << hook)) != 0)
 		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-				return name;
-			}
-			else
-			{
-				info("renames method '%s.%s%s' to 'localSetTextureOffset' because it doesn't call its super method", enhancableClassName, name, desc);
-				return "localSetTextureOffset";
-			}
+			detail("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
+			return name;
 		}
 
-		if(isObfuscated)
+		String localName = mappings.getLocalName(hook);
+		if(name.equals(mappings.getName(hook)))
+			detail("renames method '%s.%s%s' to '%s' because it doesn't call its super method", enhancableClassName, name, desc, localName);
+		else
+			detail("renames method '%s.%s%s' to '%s' because it actually is '%s' and doesn't call its super method", enhancableClassName, name, desc, localName, mappings.getName(hook));
+		return localName;
+	}
+
+	public static boolean summaryLogging;
+
+	private static final int LogQueueCapacity = 4096;
+	private static final Logger logger = LogManager.getLogger("RenderPlayerAPIEnhancer");
+	private static volatile BlockingQueue<Object[]> logQueue;
+
+	// per class and per method details, which summary logging replaces by one line per enhanced class
+	public static void detail(String format, Object... args)
+	{
+		if(isDetailed())
+			log(Level.INFO, "Render Player API Enhancer " + format, args);
+	}
+
+	// for callers that have to compute the arguments of their details, so summary logging doesn't compute them at all
+	public static boolean isDetailed()
+	{
+		return !summaryLogging && logger.isInfoEnabled();
+	}
+
+	public static void summary(String enhancableClassName, int localHooks, int keptHooks, int removedHooks, int superCalls)
+	{
+		if(summaryLogging)
+			info("enhances class '%s': renamed %d, kept %d and removed %d methods, retargeted %d super calls", enhancableClassName, Integer.bitCount(localHooks), Integer.bitCount(keptHooks), Integer.bitCount(removedHooks), superCalls);
+	}
+
+	public static void info(String format, Object... args)
+	{
+		if(logger.isInfoEnabled())
+			log(Level.INFO, "Render Player API Enhancer " + format, args);
+	}
+
+	// formats lazily and only if the level is enabled, on the log thread if asynchronous logging is started and
+	// its queue is not full, otherwise right here even if that puts the message before still queued ones
+	public static void log(Level level, String format, Object... args)
+	{
+		if(!logger.isEnabled(level))
+			return;
+
+		BlockingQueue<Object[]> queue = logQueue;
+		if(queue == null || !queue.offer(new Object[] { level, format, args }))
+			logger.printf(level, format, args);
+	}
+
+	public static synchronized void startAsynchronousLogging()
+	{
+		if(logQueue != null)
+			return;
+
+		final BlockingQueue<Object[]> queue = new LinkedBlockingQueue<Object[]>(LogQueueCapacity);
+		Thread thread = new Thread("Render Player API Enhancer Log")
 		{
-			if(name.equals("a") && desc.equals("(Z)V"))
+			@Override
+			public void run()
 			{
-				if(superCallingMethods.contains(name + "___" + desc))
+				try
 				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method ", enhancableClassName, name, desc);
-					return name;
+					for(;;)
+						write(queue.take());
 				}
-				else
-				{
-					info("renames method '%s.%s%s' to 'localSetVisible' because it actually is 'setVisible' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localSetVisible";
-				}
-			}
-			else if(name.equals("func_178719_a") && desc.equals("(Z)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-					return name;
-				}
-				else
+				catch(InterruptedException e)
 				{
-					info("renames method '%s.%s%s' to 'localSetVisible' because it actually is 'setVisible' and doesn't call its super method", enhancableClassName, name, desc);
-					return "localSetVisible";
 				}
 			}
-		}
-		else if(name.equals("setVisible") && desc.equals("(Z)V"))
+		};
+		thread.setDaemon(true);
+		thread.start();
+
+		Runtime.getRuntime().addShutdownHook(new Thread("Render Player API Enhancer Log Flush")
 		{
-			if(superCallingMethods.contains(name + "___" + desc))
+			@Override
+			public void run()
 			{
-				info("leaves method '%s.%s%s' untouched because it calls its super method", enhancableClassName, name, desc);
-				return name;
+				flush();
 			}
-			else
-			{
-				info("renames method '%s.%s%s' to 'localSetVisible' because it doesn't call its super method", enhancableClassName, name, desc);
-				return "localSetVisible";
-			}
-		}
-
-		return name;
+		});
+		logQueue = queue;
 	}
 
-	public static void info(String format, Object... args)
+	// writes the queued messages on the calling thread, so nothing is lost when the game exits right away
+	public static void flush()
 	{
-		log(Level.INFO, "Render Player API Enhancer " + format, args);
+		BlockingQueue<Object[]> queue = logQueue;
+		if(queue == null)
+			return;
+
+		Object[] message;
+		while((message = queue.poll()) != null)
+			write(message);
 	}
 
-	public static void log(Level level, String format, Object... args)
+	private static void write(Object[] message)
 	{
-		LogManager.getLogger("RenderPlayerAPIEnhancer").log(level, String.format(format, args));
+		logger.printf((Level)message[0], (String)message[1], (Object[])message[2]);
 	}
 }
@@ -0,0 +1,596 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import java.io.*;
+import java.util.*;
+
+import org.objectweb.asm.*;
+
+import static api.player.model.ModelPlayerAPIEnhancerClassFile.*;
+
+// enhances classes by appending the new names and references to the constant pool and repointing the few
+// indices that change, all instructions keep their length so the code and its stack map frames stay valid
+public final class ModelPlayerAPIEnhancerConstantPoolPatcher
+{
+	private static final String ModelPlayerArmor = "api/player/model/ModelPlayerArmor";
+
+	private static class Method
+	{
+		private int access;
+		private int offset;
+		private int end;
+		private int nameIndexOffset;
+		private String name;
+		private String desc;
+		private int hook = -1;
+		private int codeOffset = -1;
+		private int codeLength;
+		private final List<Integer> instructionOffsets = new ArrayList<Integer>();
+	}
+
+	// replaces the given number of original bytes at the given original offset
+	private static class Splice
+	{
+		private final int offset;
+		private final int length;
+		private final byte[] bytes;
+
+		private Splice(int offset, int length, byte[] bytes)
+		{
+			this.offset = offset;
+			this.length = length;
+			this.bytes = bytes;
+		}
+	}
+
+	private final byte[] bytes;
+	private final int[] offsets;
+	private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+	private final Map<String, Integer> addedUtf8 = new HashMap<String, Integer>();
+	private final Map<Integer, Integer> addedMethodrefs = new HashMap<Integer, Integer>();
+	private final List<int[]> patches = new ArrayList<int[]>();
+	private final List<Splice> splices = new ArrayList<Splice>();
+	private int methodCountOffset;
+	private int methodsEnd;
+	private int nextIndex;
+	private int renamedMethods;
+
+	private ModelPlayerAPIEnhancerConstantPoolPatcher(byte[] bytes, int[] offsets)
+	{
+		this.bytes = bytes;
+		this.offsets = offsets;
+		this.nextIndex = offsets.length - 1;
+	}
+
+	// returns the original bytes for unrelated classes and null for classes that have to be enhanced the usual way
+	public static byte[] patch(byte[] bytes, boolean isObfuscated, String indirectSuperClassName)
+	{
+		return patch(bytes, isObfuscated, indirectSuperClassName, 0);
+	}
+
+	public static byte[] patch(byte[] bytes, boolean isObfuscated, String indirectSuperClassName, int features)
+	{
+		// only the class visitor looks at all instructions
+		if((features & ModelPlayerAPIEnhancerClassVisitor.AllocationReport) != 0)
+			return null;
+
+		int[] offsets = bytes == null ? null : getEntryOffsets(bytes);
+		if(offsets == null)
+			return null;
+
+		// classes that fall back to the class visitor are recorded there
+		ModelPlayerAPIEnhancerFlightRecorder.EnhancementEvent event = ModelPlayerAPIEnhancerFlightRecorder.beginEnhancement();
+		try
+		{
+			ModelPlayerAPIEnhancerConstantPoolPatcher patcher = new ModelPlayerAPIEnhancerConstantPoolPatcher(bytes, offsets);
+			byte[] result = patcher.patch(isObfuscated, indirectSuperClassName, features);
+			if(result != null)
+				ModelPlayerAPIEnhancerFlightRecorder.commitEnhancement(event, bytes, patcher.renamedMethods);
+			return result;
+		}
+		catch(ArrayIndexOutOfBoundsException aioobe)
+		{
+			return null;
+		}
+		catch(IOException ioe)
+		{
+			return null;
+		}
+	}
+
+	private byte[] patch(boolean isObfuscated, String indirectSuperClassName, int features) throws IOException
+	{
+		ModelPlayerAPIEnhancerMappings mappings = ModelPlayerAPIEnhancerMappings.get(isObfuscated);
+		int codeHooks = 0;
+		if((features & ModelPlayerAPIEnhancerClassVisitor.RotationGuard) != 0)
+			codeHooks |= ModelPlayerAPIEnhancerClassVisitor.getLocalHooks(mappings, new String[] { ModelPlayerAPIEnhancerRotationGuardVisitor.LocalName });
+		if((features & ModelPlayerAPIEnhancerClassVisitor.GetterCache) != 0)
+			codeHooks |= ModelPlayerAPIEnhancerClassVisitor.getLocalHooks(mappings, ModelPlayerAPIEnhancerGetterCache.LocalNames);
+		if((features & ModelPlayerAPIEnhancerClassVisitor.AllocationHoisting) != 0)
+			codeHooks |= ModelPlayerAPIEnhancerClassVisitor.getLocalHooks(mappings, ModelPlayerAPIEnhancerHoistingVisitor.LocalNames);
+		if((features & (ModelPlayerAPIEnhancerClassVisitor.RenderProfiling | ModelPlayerAPIEnhancerClassVisitor.AllocationSampling)) != 0)
+			codeHooks |= ModelPlayerAPIEnhancerClassVisitor.getLocalHooks(mappings, ModelPlayerAPIEnhancerProbeVisitor.LocalNames);
+		if((features & ModelPlayerAPIEnhancerClassVisitor.FlightRecording) != 0)
+			codeHooks |= ModelPlayerAPIEnhancerClassVisitor.getLocalHooks(mappings, ModelPlayerAPIEnhancerFlightRecorder.LocalNames);
+		int end = offsets[offsets.length - 1];
+		String className = readClassReference(readUnsignedShort(bytes, end + 2));
+		int superClassIndex = readUnsignedShort(bytes, end + 4);
+		String superClassName = readClassReference(superClassIndex);
+		if(className == null || superClassName == null)
+			return null;
+
+		boolean direct = superClassName.equals(ModelBiped) || (isObfuscated && superClassName.equals(ObfuscatedModelBiped));
+		if(!direct && (indirectSuperClassName == null || !superClassName.equals(indirectSuperClassName)))
+		{
+			if(ModelPlayerAPIEnhancerClassVisitor.isDetailed())
+				ModelPlayerAPIEnhancerClassVisitor.detail("leaves class '%s' untouched because it extends the unrelated class '%s'", className.replace('/', '.'), superClassName.replace('/', '.'));
+			return bytes;
+		}
+
+		List<Method> methods = readMethods(end);
+		if(methods == null)
+			return null;
+
+		int superCallingHooks = 0;
+		for(Method method : methods)
+			if(isEnhancedMethod(method) && (method.hook = mappings.getHook(method.name, method.desc)) >= 0)
+				for(int offset : method.instructionOffsets)
+				{
+					if((bytes[offset] & 0xFF) != Opcodes.INVOKESPECIAL)
+						continue;
+
+					int index = readUnsignedShort(bytes, offset + 1);
+					if(bytes[offsets[index]] == ConstantMethodref && method.name.equals(readMemberName(index)) && method.desc.equals(readMemberDesc(index)))
+						superCallingHooks |= 1 << method.hook;
+				}
+
+		int localHooks = 0;
+		int removedHooks = 0;
+		int superCalls = 0;
+		String enhancableClassName = className.replace('/', '.');
+		int enhancerSuperClassIndex = superClassIndex;
+		if(direct)
+		{
+			enhancerSuperClassIndex = addClass(ModelPlayerArmor);
+			patches.add(new int[] { end + 4, enhancerSuperClassIndex });
+			if(ModelPlayerAPIEnhancerClassVisitor.isDetailed())
+				ModelPlayerAPIEnhancerClassVisitor.detail("enhances class '%s' to extend class '%s' instead of class '%s'", enhancableClassName, ModelPlayerArmor.replace('/', '.'), superClassName.replace('/', '.'));
+		}
+		else if(ModelPlayerAPIEnhancerClassVisitor.isDetailed())
+			ModelPlayerAPIEnhancerClassVisitor.detail("enhances class '%s' that extends the model biped class through the enhanced class '%s'", enhancableClassName, superClassName.replace('/', '.'));
+
+		for(Method method : methods)
+			if(direct && method.name.equals("<init>"))
+			{
+				ModelPlayerAPIEnhancerClassVisitor.detail("modifies constructor '%s%s'", enhancableClassName, method.desc);
+
+				// only the super constructor call gets retargeted, not the ones initializing new model biped instances
+				int pending = 0;
+				for(int offset : method.instructionOffsets)
+				{
+					int index = readUnsignedShort(bytes, offset + 1);
+					if((bytes[offset] & 0xFF) == Opcodes.NEW)
+					{
+						if(superClassName.equals(readClassReference(index)))
+							pending++;
+					}
+					else if(isMethodref(index, superClassName) && readMemberName(index).equals("<init>"))
+					{
+						if(pending > 0)
+							pending--;
+						else
+							patches.add(new int[] { offset + 1, addMethodref(index, enhancerSuperClassIndex, null) });
+					}
+				}
+				if(pending != 0)
+					return null;
+			}
+			else if(isEnhancedMethod(method))
+			{
+				if(method.hook >= 0 && isForwarding(method, superClassName))
+				{
+					ModelPlayerAPIEnhancerClassVisitor.detail("removes method '%s.%s%s' because it only calls its super method", enhancableClassName, method.name, method.desc);
+					splices.add(new Splice(method.offset, method.end - method.offset, new byte[0]));
+					removedHooks |= 1 << method.hook;
+					continue;
+				}
+
+				if(method.hook >= 0 && (superCallingHooks & (1 << method.hook)) == 0)
+				{
+					// the rotation guard, the getter cache, the allocation hoisting and the probes change code, which only the class visitor can do
+					if((codeHooks & (1 << method.hook)) != 0 && method.codeOffset >= 0)
+						return null;
+
+					String localName = mappings.getLocalName(method.hook);
+					ModelPlayerAPIEnhancerClassVisitor.detail("renames method '%s.%s%s' to '%s' because it doesn't call its super method", enhancableClassName, method.name, method.desc, localName);
+					patches.add(new int[] { method.nameIndexOffset, addUtf8(localName) });
+					localHooks |= 1 << method.hook;
+				}
+
+				for(int offset : method.instructionOffsets)
+				{
+					int index = readUnsignedShort(bytes, offset + 1);
+					if((bytes[offset] & 0xFF) != Opcodes.INVOKESPECIAL || !isMethodref(index, superClassName))
+						continue;
+
+					int hook = mappings.getHook(readMemberName(index), readMemberDesc(index));
+					if(hook >= 0 && (superCallingHooks & (1 << hook)) == 0)
+					{
+						patches.add(new int[] { offset + 1, addMethodref(index, enhancerSuperClassIndex, mappings.getLocalName(hook)) });
+						superCalls++;
+					}
+				}
+			}
+
+		int[] masks = new int[] { localHooks, superCallingHooks & ~removedHooks, removedHooks };
+		addCapabilities(end, methods.size() - Integer.bitCount(removedHooks), enhancerSuperClassIndex, !direct, masks);
+
+		if(nextIndex > 0xFFFF)
+			return null;
+
+		ModelPlayerAPIEnhancerClassVisitor.summary(enhancableClassName, localHooks, superCallingHooks & ~removedHooks, removedHooks, superCalls);
+		renamedMethods = Integer.bitCount(localHooks);
+		return write(end);
+	}
+
+	private static boolean isEnhancedMethod(Method method)
+	{
+		return (method.access & Opcodes.ACC_STATIC) == 0 && !method.name.equals("<init>") && !method.name.equals("<clinit>");
+	}
+
+	private List<Method> readMethods(int end)
+	{
+		int offset = end + 6;
+		offset += 2 + 2 * readUnsignedShort(bytes, offset);
+
+		int fieldCount = readUnsignedShort(bytes, offset);
+		offset += 2;
+		for(int i = 0; i < fieldCount; i++)
+			offset = skipAttributes(offset + 6);
+
+		methodCountOffset = offset;
+		int methodCount = readUnsignedShort(bytes, offset);
+		offset += 2;
+		List<Method> methods = new ArrayList<Method>(methodCount);
+		for(int i = 0; i < methodCount; i++)
+		{
+			Method method = new Method();
+			method.offset = offset;
+			method.access = readUnsignedShort(bytes, offset);
+			method.nameIndexOffset = offset + 2;
+			method.name = readUtf8(bytes, offsets[readUnsignedShort(bytes, offset + 2)]);
+			method.desc = readUtf8(bytes, offsets[readUnsignedShort(bytes, offset + 4)]);
+
+			int attributeCount = readUnsignedShort(bytes, offset + 6);
+			offset += 8;
+			for(int j = 0; j < attributeCount; j++)
+			{
+				int length = readInt(bytes, offset + 2);
+				if(equalsUtf8(bytes, offsets[readUnsignedShort(bytes, offset)], "Code"))
+				{
+					method.codeLength = readInt(bytes, offset + 10);
+					method.codeOffset = offset + 14;
+				}
+				offset += 6 + length;
+			}
+			method.end = offset;
+
+			if(method.codeOffset >= 0 && !findInstructions(method))
+				return null;
+			methods.add(method);
+		}
+		methodsEnd = offset;
+		return methods;
+	}
+
+	// only steps over the instructions, nothing but the operands of new and invokespecial is looked at
+	private boolean findInstructions(Method method)
+	{
+		int start = method.codeOffset;
+		int end = start + method.codeLength;
+		for(int offset = start; offset < end; )
+		{
+			int opcode = bytes[offset] & 0xFF;
+			if(opcode == Opcodes.INVOKESPECIAL || opcode == Opcodes.NEW)
+				method.instructionOffsets.add(offset);
+
+			int length = getInstructionLength(opcode, offset - start, offset);
+			if(length <= 0)
+				return false;
+			offset += length;
+		}
+		return true;
+	}
+
+	// whether the code is nothing but "load this and all arguments, call the super method, return its result"
+	private boolean isForwarding(Method method, String superClassName)
+	{
+		if(method.codeOffset < 0 || (method.access & Opcodes.ACC_SYNCHRONIZED) != 0 || readUnsignedShort(bytes, method.codeOffset + method.codeLength) != 0)
+			return false;
+
+		int offset = loadLocal(method.codeOffset, Opcodes.ALOAD, 0);
+		int local = 1;
+		for(Type argumentType : Type.getArgumentTypes(method.desc))
+		{
+			if(offset < 0)
+				return false;
+			offset = loadLocal(offset, argumentType.getOpcode(Opcodes.ILOAD), local);
+			local += argumentType.getSize();
+		}
+		if(offset < 0 || (bytes[offset] & 0xFF) != Opcodes.INVOKESPECIAL)
+			return false;
+
+		int index = readUnsignedShort(bytes, offset + 1);
+		if(!isMethodref(index, superClassName) || !method.name.equals(readMemberName(index)) || !method.desc.equals(readMemberDesc(index)))
+			return false;
+		offset += 3;
+		return (bytes[offset] & 0xFF) == Type.getReturnType(method.desc).getOpcode(Opcodes.IRETURN) && offset + 1 == method.codeOffset + method.codeLength;
+	}
+
+	// the offset after the given load instruction in its short or its long form, or -1 for any other instruction
+	private int loadLocal(int offset, int opcode, int local)
+	{
+		int actual = bytes[offset] & 0xFF;
+		if(actual == opcode)
+			return (bytes[offset + 1] & 0xFF) == local ? offset + 2 : -1;
+		if(local <= 3 && actual == 0x1A + (opcode - Opcodes.ILOAD) * 4 + local)
+			return offset + 1;
+		return -1;
+	}
+
+	private int getInstructionLength(int opcode, int pc, int offset)
+	{
+		if(opcode <= 0x0F || (opcode >= 0x1A && opcode <= 0x35) || (opcode >= 0x3B && opcode <= 0x83) || (opcode >= 0x85 && opcode <= 0x98) || (opcode >= 0xAC && opcode <= 0xB1) || opcode == 0xBE || opcode == 0xBF || opcode == 0xC2 || opcode == 0xC3)
+			return 1;
+		if(opcode == 0x10 || opcode == 0x12 || (opcode >= 0x15 && opcode <= 0x19) || (opcode >= 0x36 && opcode <= 0x3A) || opcode == 0xA9 || opcode == 0xBC)
+			return 2;
+		if(opcode == 0x11 || opcode == 0x13 || opcode == 0x14 || opcode == 0x84 || (opcode >= 0x99 && opcode <= 0xA8) || (opcode >= 0xB2 && opcode <= 0xB8) || opcode == 0xBB || opcode == 0xBD || opcode == 0xC0 || opcode == 0xC1 || opcode == 0xC6 || opcode == 0xC7)
+			return 3;
+		if(opcode == 0xC5)
+			return 4;
+		if(opcode == 0xB9 || opcode == 0xBA || opcode == 0xC8 || opcode == 0xC9)
+			return 5;
+		if(opcode == 0xC4)
+			return (bytes[offset + 1] & 0xFF) == 0x84 ? 6 : 4;
+
+		int padding = 3 - (pc & 3);
+		if(opcode == 0xAA)
+		{
+			int low = readInt(bytes, offset + 1 + padding + 4);
+			int high = readInt(bytes, offset + 1 + padding + 8);
+			return 1 + padding + 12 + 4 * (high - low + 1);
+		}
+		if(opcode == 0xAB)
+			return 1 + padding + 8 + 8 * readInt(bytes, offset + 1 + padding + 4);
+		return -1;
+	}
+
+	private int skipAttributes(int offset)
+	{
+		int attributeCount = readUnsignedShort(bytes, offset);
+		offset += 2;
+		for(int i = 0; i < attributeCount; i++)
+			offset += 6 + readInt(bytes, offset + 2);
+		return offset;
+	}
+
+	private String readClassReference(int index)
+	{
+		if(index < 1 || index >= offsets.length - 1 || bytes[offsets[index]] != ConstantClass)
+			return null;
+		return readUtf8(bytes, offsets[readUnsignedShort(bytes, offsets[index] + 1)]);
+	}
+
+	private boolean isMethodref(int index, String ownerName)
+	{
+		int offset = offsets[index];
+		return bytes[offset] == ConstantMethodref && equalsUtf8(bytes, offsets[readUnsignedShort(bytes, offsets[readUnsignedShort(bytes, offset + 1)] + 1)], ownerName);
+	}
+
+	private String readMemberName(int index)
+	{
+		return readUtf8(bytes, offsets[readUnsignedShort(bytes, offsets[readUnsignedShort(bytes, offsets[index] + 3)] + 1)]);
+	}
+
+	private String readMemberDesc(int index)
+	{
+		return readUtf8(bytes, offsets[readUnsignedShort(bytes, offsets[readUnsignedShort(bytes, offsets[index] + 3)] + 3)]);
+	}
+
+	private int addUtf8(String value)
+	{
+		Integer index = addedUtf8.get(value);
+		if(index != null)
+			return index;
+
+		// all added names are plain ascii
+		pool.write(ConstantUtf8);
+		writeShort(value.length());
+		for(int i = 0; i < value.length(); i++)
+			pool.write(value.charAt(i));
+		addedUtf8.put(value, nextIndex);
+		return nextIndex++;
+	}
+
+	// the capabilities interface, a constant field per mask and an accessor per field, see the class visitor
+	private void addCapabilities(int end, int methodCount, int superClassIndex, boolean indirect, int[] masks) throws IOException
+	{
+		int interfaceCount = readUnsignedShort(bytes, end + 6);
+		patches.add(new int[] { end + 6, interfaceCount + 1 });
+		splices.add(new Splice(end + 8, 0, toShort(addClass(Capabilities))));
+
+		int fieldCountOffset = end + 8 + 2 * interfaceCount;
+		patches.add(new int[] { fieldCountOffset, readUnsignedShort(bytes, fieldCountOffset) + masks.length });
+		patches.add(new int[] { methodCountOffset, methodCount + masks.length });
+
+		int classIndex = readUnsignedShort(bytes, end + 2);
+		int intIndex = addUtf8("I");
+		ByteArrayOutputStream fieldBytes = new ByteArrayOutputStream();
+		ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+		DataOutputStream fields = new DataOutputStream(fieldBytes);
+		DataOutputStream methods = new DataOutputStream(methodBytes);
+		for(int i = 0; i < masks.length; i++)
+		{
+			String fieldName = CapabilityFields[i];
+			fields.writeShort(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_SYNTHETIC);
+			fields.writeShort(addUtf8(fieldName));
+			fields.writeShort(intIndex);
+			fields.writeShort(1);
+			fields.writeShort(addUtf8("ConstantValue"));
+			fields.writeInt(2);
+			fields.writeShort(addInteger(masks[i]));
+
+			String accessorName = CapabilityAccessors[i];
+			int codeLength = indirect ? 9 : 4;
+			methods.writeShort(Opcodes.ACC_PUBLIC);
+			methods.writeShort(addUtf8(accessorName));
+			methods.writeShort(addUtf8("()I"));
+			methods.writeShort(1);
+			methods.writeShort(addUtf8("Code"));
+			methods.writeInt(12 + codeLength);
+			methods.writeShort(indirect ? 2 : 1);
+			methods.writeShort(1);
+			methods.writeInt(codeLength);
+			methods.writeByte(Opcodes.GETSTATIC);
+			methods.writeShort(addMemberref(ConstantFieldref, classIndex, fieldName, "I"));
+			if(indirect)
+			{
+				methods.writeByte(0x2A);
+				methods.writeByte(Opcodes.INVOKESPECIAL);
+				methods.writeShort(addMemberref(ConstantMethodref, superClassIndex, accessorName, "()I"));
+				methods.writeByte(Opcodes.IOR);
+			}
+			methods.writeByte(Opcodes.IRETURN);
+			methods.writeShort(0);
+			methods.writeShort(0);
+		}
+		splices.add(new Splice(methodCountOffset, 0, fieldBytes.toByteArray()));
+		splices.add(new Splice(methodsEnd, 0, methodBytes.toByteArray()));
+	}
+
+	private int addInteger(int value)
+	{
+		pool.write(ConstantInteger);
+		writeShort(value >>> 16);
+		writeShort(value);
+		return nextIndex++;
+	}
+
+	private int addMemberref(int tag, int ownerIndex, String name, String desc)
+	{
+		int nameIndex = addUtf8(name);
+		int descIndex = addUtf8(desc);
+		pool.write(ConstantNameAndType);
+		writeShort(nameIndex);
+		writeShort(descIndex);
+		int nameAndTypeIndex = nextIndex++;
+
+		pool.write(tag);
+		writeShort(ownerIndex);
+		writeShort(nameAndTypeIndex);
+		return nextIndex++;
+	}
+
+	private static byte[] toShort(int value)
+	{
+		return new byte[] { (byte)(value >>> 8), (byte)value };
+	}
+
+	private int addClass(String name)
+	{
+		int nameIndex = addUtf8(name);
+		pool.write(ConstantClass);
+		writeShort(nameIndex);
+		return nextIndex++;
+	}
+
+	// a copy of the given method reference with another owner and optionally another name, shared by all its call sites
+	private int addMethodref(int index, int ownerIndex, String name)
+	{
+		Integer added = addedMethodrefs.get(index);
+		if(added != null)
+			return added;
+
+		int nameAndTypeIndex = readUnsignedShort(bytes, offsets[index] + 3);
+		if(name != null)
+		{
+			int nameIndex = addUtf8(name);
+			pool.write(ConstantNameAndType);
+			writeShort(nameIndex);
+			writeShort(readUnsignedShort(bytes, offsets[nameAndTypeIndex] + 3));
+			nameAndTypeIndex = nextIndex++;
+		}
+
+		pool.write(ConstantMethodref);
+		writeShort(ownerIndex);
+		writeShort(nameAndTypeIndex);
+		addedMethodrefs.put(index, nextIndex);
+		return nextIndex++;
+	}
+
+	private void writeShort(int value)
+	{
+		pool.write(value >>> 8);
+		pool.write(value);
+	}
+
+	private byte[] write(int end)
+	{
+		byte[] patched = bytes.clone();
+		putShort(patched, 8, nextIndex);
+		for(int[] patch : patches)
+			putShort(patched, patch[0], patch[1]);
+
+		splices.add(new Splice(end, 0, pool.toByteArray()));
+		Collections.sort(splices, new Comparator<Splice>()
+		{
+			@Override
+			public int compare(Splice first, Splice second)
+			{
+				return first.offset < second.offset ? -1 : first.offset > second.offset ? 1 : 0;
+			}
+		});
+
+		int length = patched.length;
+		for(Splice splice : splices)
+			length += splice.bytes.length - splice.length;
+
+		byte[] result = new byte[length];
+		int from = 0;
+		int to = 0;
+		for(Splice splice : splices)
+		{
+			System.arraycopy(patched, from, result, to, splice.offset - from);
+			to += splice.offset - from;
+			System.arraycopy(splice.bytes, 0, result, to, splice.bytes.length);
+			to += splice.bytes.length;
+			from = splice.offset + splice.length;
+		}
+		System.arraycopy(patched, from, result, to, patched.length - from);
+		return result;
+	}
+
+	private static void putShort(byte[] bytes, int offset, int value)
+	{
+		bytes[offset] = (byte)(value >>> 8);
+		bytes[offset + 1] = (byte)value;
+	}
+}
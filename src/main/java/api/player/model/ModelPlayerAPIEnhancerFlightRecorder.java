@@ -0,0 +1,129 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import java.util.concurrent.*;
+
+// JDK Flight Recorder events for the enhancement of classes and sampled calls of the per frame methods of enhanced classes,
+// the event classes are generated at runtime, so this still loads on virtual machines without 'jdk.jfr'
+public final class ModelPlayerAPIEnhancerFlightRecorder
+{
+	public static final String[] LocalNames = new String[] { "localRender", "localSetRotationAngles" };
+
+	// implemented by the generated subclass of 'jdk.jfr.Event', which inherits everything but 'set' and 'create'
+	public interface EnhancementEvent
+	{
+		void begin();
+
+		boolean shouldCommit();
+
+		void commit();
+
+		void set(String className, int bytes, int renamedMethods);
+
+		EnhancementEvent create();
+	}
+
+	public interface RenderCallEvent
+	{
+		boolean isEnabled();
+
+		void commit();
+
+		void set(String method, long callDuration);
+
+		RenderCallEvent create();
+	}
+
+	public static int interval = 16;
+
+	private static EnhancementEvent enhancementEvents;
+	private static RenderCallEvent renderCallEvents;
+	private static int countdown;
+
+	private ModelPlayerAPIEnhancerFlightRecorder()
+	{
+	}
+
+	public static boolean isSupported()
+	{
+		try
+		{
+			Class.forName("jdk.jfr.FlightRecorder", false, null);
+			return true;
+		}
+		catch(ClassNotFoundException cnfe)
+		{
+			return false;
+		}
+	}
+
+	static void register(EnhancementEvent enhancementEvent, RenderCallEvent renderCallEvent)
+	{
+		renderCallEvents = renderCallEvent;
+		enhancementEvents = enhancementEvent;
+	}
+
+	// null if no events are registered
+	public static EnhancementEvent beginEnhancement()
+	{
+		EnhancementEvent events = enhancementEvents;
+		if(events == null)
+			return null;
+
+		EnhancementEvent event = events.create();
+		event.begin();
+		return event;
+	}
+
+	public static void commitEnhancement(EnhancementEvent event, byte[] bytes, int renamedMethods)
+	{
+		if(event == null || !event.shouldCommit())
+			return;
+
+		String className = ModelPlayerAPIEnhancerClassFile.readClassName(bytes);
+		event.set(className == null ? null : className.replace('/', '.'), bytes.length, renamedMethods);
+		event.commit();
+	}
+
+	// called by the probes of enhanced classes when their method is entered, a negative result means the call is not sampled
+	public static long enter()
+	{
+		RenderCallEvent events = renderCallEvents;
+		if(--countdown > 0 || events == null || !events.isEnabled())
+			return -1;
+		// a random gap averaging the interval, so the recorded calls don't keep hitting the same methods of a fixed call order
+		countdown = 1 + ThreadLocalRandom.current().nextInt(2 * interval - 1);
+		return System.nanoTime();
+	}
+
+	// called by the probes of enhanced classes with the result of 'enter' when their method returns, the event itself
+	// is committed at the end of the call and carries the time of the call as a field
+	public static void exit(String method, long start)
+	{
+		if(start < 0)
+			return;
+
+		long callDuration = System.nanoTime() - start;
+		RenderCallEvent event = renderCallEvents.create();
+		event.set(method, callDuration);
+		event.commit();
+	}
+}
@@ -0,0 +1,137 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import org.objectweb.asm.*;
+
+// generates the subclasses of 'jdk.jfr.Event' the flight recorder events are committed with and registers them,
+// so nothing refers to 'jdk.jfr' at compile time
+public final class ModelPlayerAPIEnhancerFlightRecorderEvents
+{
+	private static final String Event = "jdk/jfr/Event";
+	private static final String Category = "Render Player API Enhancer";
+	private static final String EnhancementEvent = "api/player/model/ModelPlayerAPIEnhancerEnhancementEvent";
+	private static final String RenderCallEvent = "api/player/model/ModelPlayerAPIEnhancerRenderCallEvent";
+
+	private static class Loader extends ClassLoader
+	{
+		Loader(ClassLoader parent)
+		{
+			super(parent);
+		}
+
+		Class<?> define(String name, byte[] bytes)
+		{
+			return defineClass(name.replace('/', '.'), bytes, 0, bytes.length);
+		}
+	}
+
+	private ModelPlayerAPIEnhancerFlightRecorderEvents()
+	{
+	}
+
+	public static synchronized void register() throws ReflectiveOperationException
+	{
+		Loader loader = new Loader(ModelPlayerAPIEnhancerFlightRecorder.class.getClassLoader());
+		Class<?> enhancementEvent = loader.define(EnhancementEvent, generate(EnhancementEvent, ModelPlayerAPIEnhancerFlightRecorder.EnhancementEvent.class, "api.player.Enhancement", "Armor Model Enhancement",
+			"A class enhanced by Render Player API Enhancer", "(Ljava/lang/String;II)V", new String[] { "className", "bytes", "renamedMethods" }, new String[] { "Class", "Bytes", "Methods Renamed" }));
+		Class<?> renderCallEvent = loader.define(RenderCallEvent, generate(RenderCallEvent, ModelPlayerAPIEnhancerFlightRecorder.RenderCallEvent.class, "api.player.RenderCall", "Armor Model Render Call",
+			"A sampled call of an enhanced render or rotation angle method, committed when the call returns", "(Ljava/lang/String;J)V", new String[] { "method", "callDuration" }, new String[] { "Method", "Call Duration" }));
+
+		Class<?> flightRecorder = Class.forName("jdk.jfr.FlightRecorder", false, null);
+		flightRecorder.getMethod("register", Class.class).invoke(null, enhancementEvent);
+		flightRecorder.getMethod("register", Class.class).invoke(null, renderCallEvent);
+
+		ModelPlayerAPIEnhancerFlightRecorder.register((ModelPlayerAPIEnhancerFlightRecorder.EnhancementEvent)enhancementEvent.newInstance(), (ModelPlayerAPIEnhancerFlightRecorder.RenderCallEvent)renderCallEvent.newInstance());
+	}
+
+	// a final event class with one labeled field per argument of 'set', which stores them, and 'create', which returns a new instance
+	private static byte[] generate(String name, Class<?> eventInterface, String eventName, String label, String description, String setDesc, String[] fieldNames, String[] fieldLabels)
+	{
+		String eventInterfaceName = Type.getInternalName(eventInterface);
+		Type[] fieldTypes = Type.getArgumentTypes(setDesc);
+
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, name, null, Event, new String[] { eventInterfaceName });
+		annotate(cw.visitAnnotation("Ljdk/jfr/Name;", true), eventName);
+		annotate(cw.visitAnnotation("Ljdk/jfr/Label;", true), label);
+		annotate(cw.visitAnnotation("Ljdk/jfr/Description;", true), description);
+		AnnotationVisitor av = cw.visitAnnotation("Ljdk/jfr/Category;", true);
+		AnnotationVisitor categories = av.visitArray("value");
+		categories.visit(null, Category);
+		categories.visitEnd();
+		av.visitEnd();
+		// the stack traces of the class loading and render threads would cost more than the events themselves
+		av = cw.visitAnnotation("Ljdk/jfr/StackTrace;", true);
+		av.visit("value", Boolean.FALSE);
+		av.visitEnd();
+
+		for(int i = 0; i < fieldNames.length; i++)
+		{
+			FieldVisitor fv = cw.visitField(Opcodes.ACC_PRIVATE, fieldNames[i], fieldTypes[i].getDescriptor(), null, null);
+			annotate(fv.visitAnnotation("Ljdk/jfr/Label;", true), fieldLabels[i]);
+			if(fieldNames[i].equals("bytes"))
+				fv.visitAnnotation("Ljdk/jfr/DataAmount;", true).visitEnd();
+			else if(fieldTypes[i].getSort() == Type.LONG)
+				fv.visitAnnotation("Ljdk/jfr/Timespan;", true).visitEnd();
+			fv.visitEnd();
+		}
+
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, Event, "<init>", "()V", false);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "set", setDesc, null, null);
+		mv.visitCode();
+		int local = 1;
+		for(int i = 0; i < fieldNames.length; i++)
+		{
+			mv.visitVarInsn(Opcodes.ALOAD, 0);
+			mv.visitVarInsn(fieldTypes[i].getOpcode(Opcodes.ILOAD), local);
+			mv.visitFieldInsn(Opcodes.PUTFIELD, name, fieldNames[i], fieldTypes[i].getDescriptor());
+			local += fieldTypes[i].getSize();
+		}
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "create", "()L" + eventInterfaceName + ";", null, null);
+		mv.visitCode();
+		mv.visitTypeInsn(Opcodes.NEW, name);
+		mv.visitInsn(Opcodes.DUP);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, name, "<init>", "()V", false);
+		mv.visitInsn(Opcodes.ARETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	private static void annotate(AnnotationVisitor av, String value)
+	{
+		av.visit("value", value);
+		av.visitEnd();
+	}
+}
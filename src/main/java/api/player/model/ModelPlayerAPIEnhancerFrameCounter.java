@@ -0,0 +1,36 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+// read by the getter caches of enhanced classes, so it must not depend on anything only needed while enhancing
+public final class ModelPlayerAPIEnhancerFrameCounter
+{
+	// starts above the default value of the frame fields of the getter caches
+	public static int frame = 1;
+
+	private ModelPlayerAPIEnhancerFrameCounter()
+	{
+	}
+
+	public static void next()
+	{
+		frame++;
+	}
+}
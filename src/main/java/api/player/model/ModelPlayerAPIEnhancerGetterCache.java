@@ -0,0 +1,106 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+// remembers the last result of a local getter implementation together with its argument and the frame it was
+// computed in, the original implementation is moved to a private method that is only called on a cache miss
+public final class ModelPlayerAPIEnhancerGetterCache
+{
+	public static final String FrameCounter = "api/player/model/ModelPlayerAPIEnhancerFrameCounter";
+	public static final String[] LocalNames = new String[] { "localGetArmForSide", "localGetMainHand", "localGetTextureOffset" };
+
+	private ModelPlayerAPIEnhancerGetterCache()
+	{
+	}
+
+	public static boolean isCachable(String desc)
+	{
+		Type[] argumentTypes = Type.getArgumentTypes(desc);
+		int returnSort = Type.getReturnType(desc).getSort();
+		return argumentTypes.length == 1 && argumentTypes[0].getSort() >= Type.ARRAY && returnSort >= Type.ARRAY;
+	}
+
+	public static String getUncachedName(String localName)
+	{
+		return localName + "Uncached";
+	}
+
+	public static int getUncachedAccess(int access)
+	{
+		return (access & ~(Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED)) | Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC;
+	}
+
+	// the cache fields and the caching method in place of the moved original implementation
+	public static void generate(ClassVisitor cv, String className, int access, String localName, String desc, boolean hasFrames)
+	{
+		String keyDesc = Type.getArgumentTypes(desc)[0].getDescriptor();
+		String valueDesc = Type.getReturnType(desc).getDescriptor();
+		String frameField = localName + "Frame";
+		String keyField = localName + "Key";
+		String valueField = localName + "Value";
+
+		int fieldAccess = Opcodes.ACC_PRIVATE | Opcodes.ACC_TRANSIENT | Opcodes.ACC_SYNTHETIC;
+		cv.visitField(fieldAccess, frameField, "I", null, null).visitEnd();
+		cv.visitField(fieldAccess, keyField, keyDesc, null, null).visitEnd();
+		cv.visitField(fieldAccess, valueField, valueDesc, null, null).visitEnd();
+
+		MethodVisitor mv = cv.visitMethod(access & ~(Opcodes.ACC_SYNCHRONIZED | Opcodes.ACC_SYNTHETIC), localName, desc, null, null);
+		mv.visitCode();
+		Label miss = new Label();
+		mv.visitFieldInsn(Opcodes.GETSTATIC, FrameCounter, "frame", "I");
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitFieldInsn(Opcodes.GETFIELD, className, frameField, "I");
+		mv.visitJumpInsn(Opcodes.IF_ICMPNE, miss);
+		mv.visitVarInsn(Opcodes.ALOAD, 1);
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitFieldInsn(Opcodes.GETFIELD, className, keyField, keyDesc);
+		mv.visitJumpInsn(Opcodes.IF_ACMPNE, miss);
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitFieldInsn(Opcodes.GETFIELD, className, valueField, valueDesc);
+		mv.visitInsn(Opcodes.ARETURN);
+
+		// the result is only remembered once the original implementation returned normally
+		mv.visitLabel(miss);
+		if(hasFrames)
+			mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitVarInsn(Opcodes.ALOAD, 1);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, className, getUncachedName(localName), desc, false);
+		mv.visitFieldInsn(Opcodes.PUTFIELD, className, valueField, valueDesc);
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitVarInsn(Opcodes.ALOAD, 1);
+		mv.visitFieldInsn(Opcodes.PUTFIELD, className, keyField, keyDesc);
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitFieldInsn(Opcodes.GETSTATIC, FrameCounter, "frame", "I");
+		mv.visitFieldInsn(Opcodes.PUTFIELD, className, frameField, "I");
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitFieldInsn(Opcodes.GETFIELD, className, valueField, valueDesc);
+		mv.visitInsn(Opcodes.ARETURN);
+		mv.visitMaxs(3, 2);
+		mv.visitEnd();
+	}
+}
@@ -0,0 +1,399 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import java.util.*;
+
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+// follows the references to the primitive arrays a method creates through a model of the top of its operand stack.
+// an array may be hoisted when its size is a constant, it is stored in a local variable no other reference is stored in
+// and every reference to it is only used to read its length, to read or write one of its elements or is dropped.
+// such arrays of up to 64 elements are left alone, the escape analysis of the JIT compiler already replaces them by
+// local variables where it can and clearing them on every call would only cost extra time then
+public class ModelPlayerAPIEnhancerHoistingMethodScanner extends MethodVisitor
+{
+	private static final int Other = -1;
+	private static final int Wide = -2;
+	private static final int MaxArrays = 64;
+	private static final int MinHoistedLength = 65;
+
+	private final String name;
+	private final String desc;
+	private final String hookName;
+	private final String hookLocalName;
+	private final int method;
+	private final ModelPlayerAPIEnhancerHoistingScanner scanner;
+	private final int firstLocal;
+
+	// the modelled top of the operand stack, only kept while it holds array references, with 'Wide' for long and double
+	// values and 'Other' for any other value
+	private final List<Integer> stack = new ArrayList<Integer>();
+	private int tracked;
+
+	private int arrays;
+	private long constantSized;
+	private long escaped;
+	private final int[] locals = new int[MaxArrays];
+	private int[] referenceStores = new int[16];
+	private final BitSet loadedUnassigned = new BitSet();
+	// the int constant on top of the operand stack, -1 for none
+	private int constant = -1;
+	private boolean recursive;
+
+	public ModelPlayerAPIEnhancerHoistingMethodScanner(MethodVisitor paramMethodVisitor, String name, String desc, int hook, int method, ModelPlayerAPIEnhancerHoistingScanner scanner)
+	{
+		super(262144, paramMethodVisitor);
+		this.name = name;
+		this.desc = desc;
+		this.hookName = scanner.mappings.getName(hook);
+		this.hookLocalName = scanner.mappings.getLocalName(hook);
+		this.method = method;
+		this.scanner = scanner;
+		this.firstLocal = Type.getArgumentsAndReturnSizes(desc) >> 2;
+		Arrays.fill(locals, -1);
+	}
+
+	@Override
+	public void visitInsn(int opcode)
+	{
+		if(opcode >= Opcodes.IALOAD && opcode <= Opcodes.SALOAD)
+		{
+			pop(1);
+			use();
+			push(getResult(opcode));
+		}
+		else if(opcode >= Opcodes.IASTORE && opcode <= Opcodes.SASTORE)
+		{
+			pop(2);
+			use();
+		}
+		else if(opcode == Opcodes.ARRAYLENGTH)
+		{
+			use();
+			push(Other);
+		}
+		else if(opcode == Opcodes.POP)
+			use();
+		else if(opcode == Opcodes.POP2)
+			pop(peek() == Wide ? 1 : 2);
+		else if(opcode == Opcodes.DUP)
+			push(peek());
+		else if(opcode == Opcodes.DUP2)
+		{
+			// like 'x[i] += y', which reads and writes the same element
+			int top = peek();
+			if(top != Wide)
+				push(stack.size() > 1 ? stack.get(stack.size() - 2) : Other);
+			push(top);
+		}
+		else if(opcode >= Opcodes.ACONST_NULL && opcode <= Opcodes.DCONST_1)
+			push(getResult(opcode));
+		else if((opcode >= Opcodes.INEG && opcode <= Opcodes.DNEG) || (opcode >= Opcodes.I2L && opcode <= Opcodes.I2S))
+		{
+			pop(1);
+			push(getResult(opcode));
+		}
+		else if(opcode >= Opcodes.IADD && opcode <= Opcodes.DCMPG)
+		{
+			pop(2);
+			push(getResult(opcode));
+		}
+		else if((opcode >= Opcodes.IRETURN && opcode <= Opcodes.ARETURN) || opcode == Opcodes.MONITORENTER || opcode == Opcodes.MONITOREXIT)
+			pop(1);
+		else if(opcode != Opcodes.NOP)
+			escapeAll();
+
+		constant = opcode >= Opcodes.ICONST_0 && opcode <= Opcodes.ICONST_5 ? opcode - Opcodes.ICONST_0 : -1;
+		super.visitInsn(opcode);
+	}
+
+	@Override
+	public void visitIntInsn(int opcode, int operand)
+	{
+		if(opcode == Opcodes.NEWARRAY)
+		{
+			pop(1);
+			int array = arrays++;
+			if(array < MaxArrays && constant >= MinHoistedLength)
+				constantSized |= 1L << array;
+			push(array < MaxArrays ? array : Other);
+		}
+		else
+			push(Other);
+
+		constant = opcode != Opcodes.NEWARRAY ? operand : -1;
+		super.visitIntInsn(opcode, operand);
+	}
+
+	@Override
+	public void visitVarInsn(int opcode, int var)
+	{
+		if(opcode == Opcodes.ALOAD)
+		{
+			int array = getArray(var);
+			if(array == Other)
+				loadedUnassigned.set(var);
+			push(array);
+		}
+		else if(opcode >= Opcodes.ILOAD && opcode <= Opcodes.DLOAD)
+			push(opcode == Opcodes.LLOAD || opcode == Opcodes.DLOAD ? Wide : Other);
+		else if(opcode == Opcodes.ASTORE)
+		{
+			// other values may share the local variable, but only a reference can be loaded with 'aload'
+			storeReference(var);
+			int array = peek();
+			if(array >= 0 && locals[array] < 0 && var >= firstLocal)
+			{
+				use();
+				locals[array] = var;
+			}
+			else
+				pop(1);
+		}
+		else if(opcode >= Opcodes.ISTORE && opcode <= Opcodes.DSTORE)
+			pop(1);
+		else
+			escapeAll();
+
+		constant = -1;
+		super.visitVarInsn(opcode, var);
+	}
+
+	@Override
+	public void visitTypeInsn(int opcode, String type)
+	{
+		if(opcode != Opcodes.NEW)
+			pop(1);
+		push(Other);
+
+		constant = -1;
+		super.visitTypeInsn(opcode, type);
+	}
+
+	@Override
+	public void visitFieldInsn(int opcode, String owner, String name, String desc)
+	{
+		if(opcode == Opcodes.PUTFIELD)
+			pop(2);
+		else if(opcode != Opcodes.GETSTATIC)
+			pop(1);
+		if(opcode == Opcodes.GETSTATIC || opcode == Opcodes.GETFIELD)
+			push(getValue(Type.getType(desc)));
+
+		constant = -1;
+		super.visitFieldInsn(opcode, owner, name, desc);
+	}
+
+	@Override
+	public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf)
+	{
+		// an array that is still in use must not be cleared by another call of the same method
+		if((name.equals(this.name) || name.equals(hookName) || name.equals(hookLocalName)) && desc.equals(this.desc))
+			recursive = true;
+
+		pop(Type.getArgumentTypes(desc).length + (opcode == Opcodes.INVOKESTATIC ? 0 : 1));
+		if(Type.getReturnType(desc).getSort() != Type.VOID)
+			push(getValue(Type.getReturnType(desc)));
+
+		constant = -1;
+		super.visitMethodInsn(opcode, owner, name, desc, itf);
+	}
+
+	@Override
+	public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs)
+	{
+		pop(Type.getArgumentTypes(desc).length);
+		if(Type.getReturnType(desc).getSort() != Type.VOID)
+			push(getValue(Type.getReturnType(desc)));
+
+		constant = -1;
+		super.visitInvokeDynamicInsn(name, desc, bsm, bsmArgs);
+	}
+
+	// the model does not follow branches, so no array reference may be on the stack when the control flow splits or joins
+
+	@Override
+	public void visitJumpInsn(int opcode, Label label)
+	{
+		escapeAll();
+		constant = -1;
+		super.visitJumpInsn(opcode, label);
+	}
+
+	@Override
+	public void visitLabel(Label label)
+	{
+		escapeAll();
+		constant = -1;
+		super.visitLabel(label);
+	}
+
+	@Override
+	public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels)
+	{
+		escapeAll();
+		constant = -1;
+		super.visitTableSwitchInsn(min, max, dflt, labels);
+	}
+
+	@Override
+	public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels)
+	{
+		escapeAll();
+		constant = -1;
+		super.visitLookupSwitchInsn(dflt, keys, labels);
+	}
+
+	@Override
+	public void visitLdcInsn(Object cst)
+	{
+		push(cst instanceof Long || cst instanceof Double ? Wide : Other);
+		constant = cst instanceof Integer ? ((Integer)cst).intValue() : -1;
+		super.visitLdcInsn(cst);
+	}
+
+	@Override
+	public void visitIincInsn(int var, int increment)
+	{
+		constant = -1;
+		super.visitIincInsn(var, increment);
+	}
+
+	@Override
+	public void visitMultiANewArrayInsn(String desc, int dims)
+	{
+		pop(dims);
+		push(Other);
+		constant = -1;
+		super.visitMultiANewArrayInsn(desc, dims);
+	}
+
+	@Override
+	public void visitEnd()
+	{
+		long hoistable = 0;
+		if(!recursive)
+			for(int array = 0; array < arrays && array < MaxArrays; array++)
+			{
+				int var = locals[array];
+				if(((constantSized & ~escaped) & (1L << array)) != 0 && var >= 0 && referenceStores[var] == 1 && !loadedUnassigned.get(var))
+					hoistable |= 1L << array;
+			}
+		scanner.setHoistableArrays(method, hoistable);
+		super.visitEnd();
+	}
+
+	private int getArray(int var)
+	{
+		for(int array = 0; array < arrays && array < MaxArrays; array++)
+			if(locals[array] == var)
+				return array;
+		return Other;
+	}
+
+	private void storeReference(int var)
+	{
+		if(var >= referenceStores.length)
+			referenceStores = Arrays.copyOf(referenceStores, Math.max(referenceStores.length * 2, var + 1));
+		referenceStores[var]++;
+	}
+
+	private static int getValue(Type type)
+	{
+		return type.getSize() == 2 ? Wide : Other;
+	}
+
+	// the value the given constant, array load, arithmetic or conversion instruction leaves on the stack
+	private static int getResult(int opcode)
+	{
+		if(opcode >= Opcodes.IADD && opcode <= Opcodes.LXOR)
+			return (opcode - Opcodes.IADD) % 2 == 1 ? Wide : Other;
+		switch(opcode)
+		{
+			case Opcodes.LCONST_0:
+			case Opcodes.LCONST_1:
+			case Opcodes.DCONST_0:
+			case Opcodes.DCONST_1:
+			case Opcodes.LALOAD:
+			case Opcodes.DALOAD:
+			case Opcodes.I2L:
+			case Opcodes.I2D:
+			case Opcodes.L2D:
+			case Opcodes.F2L:
+			case Opcodes.F2D:
+			case Opcodes.D2L:
+				return Wide;
+			default:
+				return Other;
+		}
+	}
+
+	private int peek()
+	{
+		return stack.isEmpty() ? Other : stack.get(stack.size() - 1);
+	}
+
+	private void push(int value)
+	{
+		if(value >= 0)
+			tracked++;
+		if(tracked > 0)
+			stack.add(value);
+	}
+
+	// takes the top value off the stack without the array reference it might be escaping
+	private void use()
+	{
+		if(!stack.isEmpty() && stack.remove(stack.size() - 1) >= 0)
+			tracked--;
+		if(tracked == 0)
+			stack.clear();
+	}
+
+	// takes values off the stack that are used in any other way, so the array references among them escape
+	private void pop(int count)
+	{
+		for(int i = 0; i < count && !stack.isEmpty(); i++)
+			escape(stack.remove(stack.size() - 1));
+		if(tracked == 0)
+			stack.clear();
+	}
+
+	private void escapeAll()
+	{
+		for(int value : stack)
+			escape(value);
+		stack.clear();
+	}
+
+	private void escape(int value)
+	{
+		if(value >= 0)
+		{
+			escaped |= 1L << value;
+			tracked--;
+		}
+	}
+}
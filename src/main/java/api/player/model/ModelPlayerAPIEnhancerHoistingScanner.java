@@ -0,0 +1,74 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import java.util.*;
+
+import org.objectweb.asm.*;
+
+// finds the arrays in the per frame methods of an enhanced class that may be reused across calls instead of being created again
+public class ModelPlayerAPIEnhancerHoistingScanner extends ClassVisitor
+{
+	// only looks at the instructions, so neither debug information nor frames are read
+	public static ModelPlayerAPIEnhancerHoistingScanner scan(ClassReader cr, ModelPlayerAPIEnhancerMappings mappings, int hooks)
+	{
+		ModelPlayerAPIEnhancerHoistingScanner p = new ModelPlayerAPIEnhancerHoistingScanner(null, mappings, hooks);
+
+		cr.accept(p, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		return p;
+	}
+
+	public ModelPlayerAPIEnhancerHoistingScanner(ClassVisitor classVisitor, ModelPlayerAPIEnhancerMappings mappings, int hooks)
+	{
+		super(262144, classVisitor);
+		this.mappings = mappings;
+		this.hooks = hooks;
+	}
+
+	final ModelPlayerAPIEnhancerMappings mappings;
+	private final int hooks;
+	private long[] hoistableArrays = new long[16];
+	private int methodCount;
+
+	// the primitive array creations of the method with the given index in class file order that may be hoisted, by their order in the method
+	public long getHoistableArrays(int method)
+	{
+		return method < methodCount ? hoistableArrays[method] : 0;
+	}
+
+	void setHoistableArrays(int method, long arrays)
+	{
+		hoistableArrays[method] = arrays;
+	}
+
+	@Override
+	public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions)
+	{
+		int method = methodCount++;
+		if(method == hoistableArrays.length)
+			hoistableArrays = Arrays.copyOf(hoistableArrays, method * 2);
+
+		MethodVisitor visitor = super.visitMethod(access, name, desc, signature, exceptions);
+		int hook = mappings.getHook(name, desc);
+		if((access & Opcodes.ACC_STATIC) == 0 && hook >= 0 && (hooks & (1 << hook)) != 0)
+			visitor = new ModelPlayerAPIEnhancerHoistingMethodScanner(visitor, name, desc, hook, method, this);
+		return visitor;
+	}
+}
@@ -0,0 +1,87 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import java.util.*;
+
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+// replaces the hoistable primitive array creations of a per frame method by a call that clears and returns the array
+// created during the previous call, which is kept in a field of the enhanced class
+public class ModelPlayerAPIEnhancerHoistingVisitor extends MethodVisitor
+{
+	public static final String[] LocalNames = new String[] { "localRender", "localSetRotationAngles" };
+	public static final String ScratchArrays = "api/player/model/ModelPlayerAPIEnhancerScratchArrays";
+	public static final String Field = "enhancerScratchArray";
+
+	private static final String[] methodNames = new String[] { "booleans", "chars", "floats", "doubles", "bytes", "shorts", "ints", "longs" };
+	private static final String[] elementDescs = new String[] { "Z", "C", "F", "D", "B", "S", "I", "J" };
+
+	private final String className;
+	private final long hoistableArrays;
+	private final List<String> fieldDescs;
+	private int arrays;
+	private boolean hoisted;
+
+	public ModelPlayerAPIEnhancerHoistingVisitor(MethodVisitor paramMethodVisitor, String className, long hoistableArrays, List<String> fieldDescs)
+	{
+		super(262144, paramMethodVisitor);
+		this.className = className;
+		this.hoistableArrays = hoistableArrays;
+		this.fieldDescs = fieldDescs;
+	}
+
+	@Override
+	public void visitIntInsn(int opcode, int operand)
+	{
+		if(opcode != Opcodes.NEWARRAY)
+		{
+			super.visitIntInsn(opcode, operand);
+			return;
+		}
+
+		int array = arrays++;
+		if(array >= 64 || (hoistableArrays & (1L << array)) == 0 || operand < Opcodes.T_BOOLEAN || operand > Opcodes.T_LONG)
+		{
+			super.visitIntInsn(opcode, operand);
+			return;
+		}
+
+		// the size is already on the stack, the result is both stored in the field and left on the stack
+		String arrayDesc = "[" + elementDescs[operand - Opcodes.T_BOOLEAN];
+		String field = Field + fieldDescs.size();
+		fieldDescs.add(arrayDesc);
+		super.visitVarInsn(Opcodes.ALOAD, 0);
+		super.visitFieldInsn(Opcodes.GETFIELD, className, field, arrayDesc);
+		super.visitMethodInsn(Opcodes.INVOKESTATIC, ScratchArrays, methodNames[operand - Opcodes.T_BOOLEAN], "(I" + arrayDesc + ")" + arrayDesc, false);
+		super.visitInsn(Opcodes.DUP);
+		super.visitVarInsn(Opcodes.ALOAD, 0);
+		super.visitInsn(Opcodes.SWAP);
+		super.visitFieldInsn(Opcodes.PUTFIELD, className, field, arrayDesc);
+		hoisted = true;
+	}
+
+	@Override
+	public void visitMaxs(int maxStack, int maxLocals)
+	{
+		super.visitMaxs(hoisted ? maxStack + 2 : maxStack, maxLocals);
+	}
+}
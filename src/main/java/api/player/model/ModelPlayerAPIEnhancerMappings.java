@@ -0,0 +1,154 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import java.io.*;
+import java.util.*;
+
+// the model player armor hook methods in all naming environments, read once from the mappings resource
+public final class ModelPlayerAPIEnhancerMappings
+{
+	public static final String ResourceName = "render_player_api_Enhancer_mappings.txt";
+
+	private static ModelPlayerAPIEnhancerMappings obfuscated;
+	private static ModelPlayerAPIEnhancerMappings deobfuscated;
+
+	private final String[] localNames;
+	private final String[] names;
+	private final Map<String, Map<String, Integer>> hooks;
+
+	private ModelPlayerAPIEnhancerMappings(List<String[]> lines, boolean isObfuscated)
+	{
+		localNames = new String[lines.size()];
+		names = new String[lines.size()];
+		hooks = new HashMap<String, Map<String, Integer>>();
+		for(int hook = 0; hook < lines.size(); hook++)
+		{
+			String[] line = lines.get(hook);
+			localNames[hook] = line[0];
+			names[hook] = line[4];
+			if(isObfuscated)
+			{
+				put(line[1], line[2], hook);
+				put(line[3], line[5], hook);
+			}
+			else
+				put(line[4], line[5], hook);
+		}
+	}
+
+	private void put(String name, String desc, int hook)
+	{
+		Map<String, Integer> descs = hooks.get(name);
+		if(descs == null)
+			hooks.put(name, descs = new HashMap<String, Integer>());
+		descs.put(desc, hook);
+	}
+
+	public static synchronized ModelPlayerAPIEnhancerMappings get(boolean isObfuscated)
+	{
+		if(isObfuscated ? obfuscated == null : deobfuscated == null)
+		{
+			ModelPlayerAPIEnhancerMappings mappings = new ModelPlayerAPIEnhancerMappings(load(), isObfuscated);
+			if(isObfuscated)
+				obfuscated = mappings;
+			else
+				deobfuscated = mappings;
+		}
+		return isObfuscated ? obfuscated : deobfuscated;
+	}
+
+	// the hook the given method implements in this environment or -1
+	public int getHook(String name, String desc)
+	{
+		Map<String, Integer> descs = hooks.get(name);
+		Integer hook = descs == null ? null : descs.get(desc);
+		return hook == null ? -1 : hook;
+	}
+
+	// the hook with the given local method name or -1, the same in all naming environments
+	public int getLocalHook(String localName)
+	{
+		for(int hook = 0; hook < localNames.length; hook++)
+			if(localNames[hook].equals(localName))
+				return hook;
+		return -1;
+	}
+
+	public String getLocalName(int hook)
+	{
+		return localNames[hook];
+	}
+
+	// the mcp name of the hook
+	public String getName(int hook)
+	{
+		return names[hook];
+	}
+
+	public int getHookCount()
+	{
+		return localNames.length;
+	}
+
+	private static List<String[]> load()
+	{
+		InputStream in = ModelPlayerAPIEnhancerMappings.class.getResourceAsStream(ResourceName);
+		if(in == null)
+			throw new RuntimeException("Render Player API Enhancer is missing its method mappings '" + ResourceName + "'");
+
+		try
+		{
+			List<String[]> result = new ArrayList<String[]>();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+			try
+			{
+				String line;
+				while((line = reader.readLine()) != null)
+				{
+					int commentIndex = line.indexOf('#');
+					if(commentIndex >= 0)
+						line = line.substring(0, commentIndex);
+					line = line.trim();
+					if(line.isEmpty())
+						continue;
+
+					String[] parts = line.split("\\s+");
+					if(parts.length != 6)
+						throw new IOException("invalid mapping '" + line + "'");
+					result.add(parts);
+				}
+			}
+			finally
+			{
+				reader.close();
+			}
+
+			// super calls are remembered per hook in an int
+			if(result.size() > 32)
+				throw new IOException("too many mappings");
+			return result;
+		}
+		catch(IOException ioe)
+		{
+			throw new RuntimeException(ioe);
+		}
+	}
+}
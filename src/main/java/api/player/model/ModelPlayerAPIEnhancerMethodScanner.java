@@ -19,30 +19,174 @@
 
 package api.player.model;
 
-import java.util.Set;
-
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 
 public class ModelPlayerAPIEnhancerMethodScanner extends MethodVisitor
 {
 	private final String name;
 	private final String desc;
-	private final Set<String> scanned;
+	private final int hook;
+	private final int method;
+	private final ModelPlayerAPIEnhancerClassScanner scanner;
+	private final Type[] argumentTypes;
+
+	// the number of instructions matching "load this and all arguments, call the super method, return its result"
+	private int forwarded;
+	private int nextLocal;
 
-	public ModelPlayerAPIEnhancerMethodScanner(MethodVisitor paramMethodVisitor, String name, String desc,  Set<String> scanned)
+	public ModelPlayerAPIEnhancerMethodScanner(MethodVisitor paramMethodVisitor, int access, String name, String desc, int hook, int method, ModelPlayerAPIEnhancerClassScanner scanner)
 	{
 		super(262144, paramMethodVisitor);
 		this.name = name;
 		this.desc = desc;
-		this.scanned = scanned;
+		this.hook = hook;
+		this.method = method;
+		this.scanner = scanner;
+		boolean mightForward = hook >= 0 && (access & Opcodes.ACC_SYNCHRONIZED) == 0;
+		this.argumentTypes = mightForward ? Type.getArgumentTypes(desc) : null;
+		this.forwarded = mightForward ? 0 : -1;
+	}
+
+	@Override
+	public void visitInsn(int opcode)
+	{
+		forward(isForwarding(2) && opcode == Type.getReturnType(desc).getOpcode(Opcodes.IRETURN));
+		super.visitInsn(opcode);
+	}
+
+	@Override
+	public void visitVarInsn(int opcode, int var)
+	{
+		if(forwarded == 0)
+			forward(opcode == Opcodes.ALOAD && var == 0);
+		else if(forwarded > 0 && forwarded <= argumentTypes.length)
+		{
+			Type argumentType = argumentTypes[forwarded - 1];
+			forward(opcode == argumentType.getOpcode(Opcodes.ILOAD) && var == nextLocal + 1);
+			nextLocal += argumentType.getSize();
+		}
+		else
+			forward(false);
+		super.visitVarInsn(opcode, var);
+	}
+
+	@Override
+	public void visitIntInsn(int opcode, int operand)
+	{
+		forward(false);
+		super.visitIntInsn(opcode, operand);
+	}
+
+	@Override
+	public void visitTypeInsn(int opcode, String type)
+	{
+		forward(false);
+		super.visitTypeInsn(opcode, type);
+	}
+
+	@Override
+	public void visitFieldInsn(int opcode, String owner, String name, String desc)
+	{
+		forward(false);
+		super.visitFieldInsn(opcode, owner, name, desc);
+	}
+
+	@Override
+	public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs)
+	{
+		forward(false);
+		super.visitInvokeDynamicInsn(name, desc, bsm, bsmArgs);
+	}
+
+	@Override
+	public void visitJumpInsn(int opcode, Label label)
+	{
+		forward(false);
+		super.visitJumpInsn(opcode, label);
+	}
+
+	@Override
+	public void visitLdcInsn(Object cst)
+	{
+		forward(false);
+		super.visitLdcInsn(cst);
+	}
+
+	@Override
+	public void visitIincInsn(int var, int increment)
+	{
+		forward(false);
+		super.visitIincInsn(var, increment);
+	}
+
+	@Override
+	public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels)
+	{
+		forward(false);
+		super.visitTableSwitchInsn(min, max, dflt, labels);
+	}
+
+	@Override
+	public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels)
+	{
+		forward(false);
+		super.visitLookupSwitchInsn(dflt, keys, labels);
+	}
+
+	@Override
+	public void visitMultiANewArrayInsn(String desc, int dims)
+	{
+		forward(false);
+		super.visitMultiANewArrayInsn(desc, dims);
+	}
+
+	@Override
+	public void visitTryCatchBlock(Label start, Label end, Label handler, String type)
+	{
+		forward(false);
+		super.visitTryCatchBlock(start, end, handler, type);
+	}
+
+	@Override
+	public void visitEnd()
+	{
+		if(isForwarding(3))
+			scanner.forwardingHooks |= 1 << hook;
+		super.visitEnd();
 	}
 
 	@Override
 	public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf)
 	{
-		if(opcode == Opcodes.INVOKESPECIAL && name.equals(this.name) && desc.equals(this.desc))
-			scanned.add(name + "___" + desc);
+		forward(isForwarding(1) && opcode == Opcodes.INVOKESPECIAL && owner.equals(scanner.superClassName) && name.equals(this.name) && desc.equals(this.desc));
+
+		if(opcode == Opcodes.INVOKESPECIAL)
+		{
+			if(hook >= 0 && name.equals(this.name) && desc.equals(this.desc))
+				scanner.superCallingHooks |= 1 << hook;
+
+			if(owner.equals(scanner.superClassName))
+			{
+				int superHook = scanner.mappings.getHook(name, desc);
+				if(superHook >= 0)
+					scanner.addSuperReferencedHook(method, superHook);
+			}
+		}
 		super.visitMethodInsn(opcode, owner, name, desc, itf);
 	}
+
+	private boolean isForwarding(int step)
+	{
+		return forwarded >= 0 && forwarded == argumentTypes.length + step;
+	}
+
+	private void forward(boolean matches)
+	{
+		if(forwarded >= 0)
+			forwarded = matches ? forwarded + 1 : -1;
+	}
 }
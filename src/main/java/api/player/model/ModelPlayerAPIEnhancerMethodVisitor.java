@@ -19,31 +19,30 @@
 
 package api.player.model;
 
-import java.util.Set;
-
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 
 public class ModelPlayerAPIEnhancerMethodVisitor extends MethodVisitor
 {
-	private final boolean isObfuscated;
 	private final String enhancableClassName;
 	private final String originalSuperClassName;
 	private final String enhancerSuperClassName;
 	private final String enhancedName;
 	private final String enhancedDesc;
-	private final Set<String> superCallingMethods;
+	private final ModelPlayerAPIEnhancerMappings mappings;
+	private final int superCallingHooks;
+	private int superCalls;
 
-	public ModelPlayerAPIEnhancerMethodVisitor(MethodVisitor paramMethodVisitor, boolean isObfuscated, String enhancableClassName, String originalSuperClassName, String enhancerSuperClassName, Set<String> superCallingMethods, String enhancedName, String enhancedDesc)
+	public ModelPlayerAPIEnhancerMethodVisitor(MethodVisitor paramMethodVisitor, String enhancableClassName, String originalSuperClassName, String enhancerSuperClassName, ModelPlayerAPIEnhancerMappings mappings, int superCallingHooks, String enhancedName, String enhancedDesc)
 	{
 		super(262144, paramMethodVisitor);
-		this.isObfuscated = isObfuscated;
 		this.enhancableClassName = enhancableClassName;
 		this.originalSuperClassName = originalSuperClassName;
 		this.enhancerSuperClassName = enhancerSuperClassName;
 		this.enhancedName = enhancedName;
 		this.enhancedDesc = enhancedDesc;
-		this.superCallingMethods = superCallingMethods;
+		this.mappings = mappings;
+		this.superCallingHooks = superCallingHooks;
 	}
 
 	@Override
@@ -56,486 +55,34 @@ public class ModelPlayerAPIEnhancerMethodVisitor extends MethodVisitor
 			{
 				name = newName;
 				owner = enhancerSuperClassName;
+				superCalls++;
 			}
 		}
 		super.visitMethodInsn(opcode, owner, name, desc, itf);
 	}
 
-	private String getSuperMethodName(String name, String desc)
+	// the super calls actually retargeted, which the constant pool patcher counts the same way
+	public int getSuperCalls()
 	{
-		if(isObfuscated)
-		{
-			if(name.equals("a") && desc.equals("(Lvo;)Lbrs;"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'getArmForSide' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localGetArmForSide";
-				}
-			}
-			else if(name.equals("func_187074_a") && desc.equals("(Lnet/minecraft/util/EnumHandSide;)Lnet/minecraft/client/model/ModelRenderer;"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'getArmForSide' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localGetArmForSide";
-				}
-			}
-		}
-		else if(name.equals("getArmForSide") && desc.equals("(Lnet/minecraft/util/EnumHandSide;)Lnet/minecraft/client/model/ModelRenderer;"))
-		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return name;
-			}
-			else
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return "localGetArmForSide";
-			}
-		}
-
-		if(isObfuscated)
-		{
-			if(name.equals("a") && desc.equals("(Lvg;)Lvo;"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'getMainHand' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localGetMainHand";
-				}
-			}
-			else if(name.equals("func_187072_a") && desc.equals("(Lnet/minecraft/entity/Entity;)Lnet/minecraft/util/EnumHandSide;"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'getMainHand' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localGetMainHand";
-				}
-			}
-		}
-		else if(name.equals("getMainHand") && desc.equals("(Lnet/minecraft/entity/Entity;)Lnet/minecraft/util/EnumHandSide;"))
-		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return name;
-			}
-			else
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return "localGetMainHand";
-			}
-		}
-
-		if(isObfuscated)
-		{
-			if(name.equals("a") && desc.equals("(Ljava/util/Random;)Lbrs;"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'getRandomModelBox' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localGetRandomModelBox";
-				}
-			}
-			else if(name.equals("func_85181_a") && desc.equals("(Ljava/util/Random;)Lnet/minecraft/client/model/ModelRenderer;"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'getRandomModelBox' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localGetRandomModelBox";
-				}
-			}
-		}
-		else if(name.equals("getRandomModelBox") && desc.equals("(Ljava/util/Random;)Lnet/minecraft/client/model/ModelRenderer;"))
-		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return name;
-			}
-			else
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return "localGetRandomModelBox";
-			}
-		}
-
-		if(isObfuscated)
-		{
-			if(name.equals("a") && desc.equals("(Ljava/lang/String;)Lbrt;"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'getTextureOffset' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localGetTextureOffset";
-				}
-			}
-			else if(name.equals("func_78084_a") && desc.equals("(Ljava/lang/String;)Lnet/minecraft/client/model/TextureOffset;"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'getTextureOffset' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localGetTextureOffset";
-				}
-			}
-		}
-		else if(name.equals("getTextureOffset") && desc.equals("(Ljava/lang/String;)Lnet/minecraft/client/model/TextureOffset;"))
-		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return name;
-			}
-			else
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return "localGetTextureOffset";
-			}
-		}
-
-		if(isObfuscated)
-		{
-			if(name.equals("a") && desc.equals("(FLvo;)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'postRenderArm' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localPostRenderArm";
-				}
-			}
-			else if(name.equals("func_187073_a") && desc.equals("(FLnet/minecraft/util/EnumHandSide;)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'postRenderArm' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localPostRenderArm";
-				}
-			}
-		}
-		else if(name.equals("postRenderArm") && desc.equals("(FLnet/minecraft/util/EnumHandSide;)V"))
-		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return name;
-			}
-			else
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return "localPostRenderArm";
-			}
-		}
-
-		if(isObfuscated)
-		{
-			if(name.equals("a") && desc.equals("(Lvg;FFFFFF)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'render' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localRender";
-				}
-			}
-			else if(name.equals("func_78088_a") && desc.equals("(Lnet/minecraft/entity/Entity;FFFFFF)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'render' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localRender";
-				}
-			}
-		}
-		else if(name.equals("render") && desc.equals("(Lnet/minecraft/entity/Entity;FFFFFF)V"))
-		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return name;
-			}
-			else
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return "localRender";
-			}
-		}
-
-		if(isObfuscated)
-		{
-			if(name.equals("a") && desc.equals("(Lvp;FFF)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'setLivingAnimations' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localSetLivingAnimations";
-				}
-			}
-			else if(name.equals("func_78086_a") && desc.equals("(Lnet/minecraft/entity/EntityLivingBase;FFF)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'setLivingAnimations' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localSetLivingAnimations";
-				}
-			}
-		}
-		else if(name.equals("setLivingAnimations") && desc.equals("(Lnet/minecraft/entity/EntityLivingBase;FFF)V"))
-		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return name;
-			}
-			else
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return "localSetLivingAnimations";
-			}
-		}
-
-		if(isObfuscated)
-		{
-			if(name.equals("a") && desc.equals("(Lbqf;)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'setModelAttributes' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localSetModelAttributes";
-				}
-			}
-			else if(name.equals("func_178686_a") && desc.equals("(Lnet/minecraft/client/model/ModelBase;)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'setModelAttributes' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localSetModelAttributes";
-				}
-			}
-		}
-		else if(name.equals("setModelAttributes") && desc.equals("(Lnet/minecraft/client/model/ModelBase;)V"))
-		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return name;
-			}
-			else
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return "localSetModelAttributes";
-			}
-		}
-
-		if(isObfuscated)
-		{
-			if(name.equals("a") && desc.equals("(FFFFFFLvg;)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'setRotationAngles' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localSetRotationAngles";
-				}
-			}
-			else if(name.equals("func_78087_a") && desc.equals("(FFFFFFLnet/minecraft/entity/Entity;)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'setRotationAngles' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localSetRotationAngles";
-				}
-			}
-		}
-		else if(name.equals("setRotationAngles") && desc.equals("(FFFFFFLnet/minecraft/entity/Entity;)V"))
-		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return name;
-			}
-			else
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return "localSetRotationAngles";
-			}
-		}
+		return superCalls;
+	}
 
-		if(isObfuscated)
-		{
-			if(name.equals("a") && desc.equals("(Ljava/lang/String;II)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'setTextureOffset' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localSetTextureOffset";
-				}
-			}
-			else if(name.equals("func_78085_a") && desc.equals("(Ljava/lang/String;II)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'setTextureOffset' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localSetTextureOffset";
-				}
-			}
-		}
-		else if(name.equals("setTextureOffset") && desc.equals("(Ljava/lang/String;II)V"))
-		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return name;
-			}
-			else
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return "localSetTextureOffset";
-			}
-		}
+	private String getSuperMethodName(String name, String desc)
+	{
+		int hook = mappings.getHook(name, desc);
+		if(hook < 0)
+			return name;
 
-		if(isObfuscated)
+		if((superCallingHooks & (1 << hook)) != 0)
 		{
-			if(name.equals("a") && desc.equals("(Z)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'setVisible' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localSetVisible";
-				}
-			}
-			else if(name.equals("func_178719_a") && desc.equals("(Z)V"))
-			{
-				if(superCallingMethods.contains(name + "___" + desc))
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return name;
-				}
-				else
-				{
-					ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because it actually is 'setVisible' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-					return "localSetVisible";
-				}
-			}
-		}
-		else if(name.equals("setVisible") && desc.equals("(Z)V"))
-		{
-			if(superCallingMethods.contains(name + "___" + desc))
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return name;
-			}
-			else
-			{
-				ModelPlayerAPIEnhancerClassVisitor.info("renames super method reference '%s%s' in '%s.%s%s' because its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
-				return "localSetVisible";
-			}
+			ModelPlayerAPIEnhancerClassVisitor.detail("leaves super method reference '%s%s' in '%s.%s%s' untouched because its local implementation does call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
+			return name;
 		}
 
-		return name;
+		if(name.equals(mappings.getName(hook)))
+			ModelPlayerAPIEnhancerClassVisitor.detail("renames super method reference '%s%s' in '%s.%s%s' because its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc);
+		else
+			ModelPlayerAPIEnhancerClassVisitor.detail("renames super method reference '%s%s' in '%s.%s%s' because it actually is '%s' and its local implementation doesn't call its super method", name, desc, enhancableClassName, enhancedName, enhancedDesc, mappings.getName(hook));
+		return mappings.getLocalName(hook);
 	}
 }
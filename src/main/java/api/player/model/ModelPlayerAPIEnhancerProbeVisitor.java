@@ -0,0 +1,99 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+// remembers what the 'enter' method of a probe returns when a per frame method is entered in a field and hands it
+// to the 'exit' method of the probe when the method returns, the render profiler gets the histogram of the method
+// from a static field of the class instead of its name
+public class ModelPlayerAPIEnhancerProbeVisitor extends MethodVisitor
+{
+	public static final String[] LocalNames = new String[] { "localRender", "localSetRotationAngles", "localSetLivingAnimations" };
+	public static final String RenderProfiler = "api/player/model/ModelPlayerAPIEnhancerRenderProfiler";
+	public static final String AllocationSampler = "api/player/model/ModelPlayerAPIEnhancerAllocationSampler";
+	public static final String FlightRecorder = "api/player/model/ModelPlayerAPIEnhancerFlightRecorder";
+	public static final String HistogramInitializer = "enhancerCreateHistograms";
+
+	private final String className;
+	private final String localName;
+	private final String probe;
+	private final String field;
+	private final String method;
+
+	public ModelPlayerAPIEnhancerProbeVisitor(MethodVisitor paramMethodVisitor, String className, String enhancableClassName, String localName, String probe)
+	{
+		super(262144, paramMethodVisitor);
+		this.className = className;
+		this.localName = localName;
+		this.probe = probe;
+		this.field = getField(localName, probe);
+		this.method = getMethod(enhancableClassName, localName);
+	}
+
+	public static String getField(String localName, String probe)
+	{
+		return localName + probe.substring(probe.lastIndexOf("Enhancer") + "Enhancer".length()) + "Start";
+	}
+
+	public static String getHistogramField(String localName)
+	{
+		return localName + "Histogram";
+	}
+
+	public static String getMethod(String enhancableClassName, String localName)
+	{
+		return enhancableClassName + "." + Character.toLowerCase(localName.charAt(5)) + localName.substring(6);
+	}
+
+	@Override
+	public void visitCode()
+	{
+		super.visitCode();
+		super.visitVarInsn(Opcodes.ALOAD, 0);
+		super.visitMethodInsn(Opcodes.INVOKESTATIC, probe, "enter", "()J", false);
+		super.visitFieldInsn(Opcodes.PUTFIELD, className, field, "J");
+	}
+
+	// calls that end with an exception are not recorded
+	@Override
+	public void visitInsn(int opcode)
+	{
+		if(opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN)
+		{
+			boolean histogram = probe.equals(RenderProfiler);
+			if(histogram)
+				super.visitFieldInsn(Opcodes.GETSTATIC, className, getHistogramField(localName), "[J");
+			else
+				super.visitLdcInsn(method);
+			super.visitVarInsn(Opcodes.ALOAD, 0);
+			super.visitFieldInsn(Opcodes.GETFIELD, className, field, "J");
+			super.visitMethodInsn(Opcodes.INVOKESTATIC, probe, "exit", histogram ? "([JJ)V" : "(Ljava/lang/String;J)V", false);
+		}
+		super.visitInsn(opcode);
+	}
+
+	@Override
+	public void visitMaxs(int maxStack, int maxLocals)
+	{
+		super.visitMaxs(maxStack + 3, maxLocals);
+	}
+}
@@ -0,0 +1,152 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// the durations of the probed per frame methods of enhanced classes with one histogram per method, which is only
+// written by the render thread and held in a static field of the enhanced class, so recording a call neither looks
+// up, allocates nor locks anything
+public final class ModelPlayerAPIEnhancerRenderProfiler
+{
+	// eight buckets per power of two, so no bucket is wider than an eighth of its lower bound
+	private static final int SubBuckets = 8;
+	private static final int Buckets = 61 * SubBuckets;
+	private static final int Calls = Buckets;
+	private static final int Total = Buckets + 1;
+
+	private static final ConcurrentMap<String, long[]> histograms = new ConcurrentHashMap<String, long[]>();
+	private static long saved = -1;
+
+	private ModelPlayerAPIEnhancerRenderProfiler()
+	{
+	}
+
+	// called by the probes of enhanced classes when their method is entered
+	public static long enter()
+	{
+		return System.nanoTime();
+	}
+
+	// called by the static initializers of enhanced classes for each of their probed methods
+	public static long[] create(String method)
+	{
+		long[] histogram = new long[Total + 1];
+		long[] existing = histograms.putIfAbsent(method, histogram);
+		return existing != null ? existing : histogram;
+	}
+
+	// called by the probes of enhanced classes with the histogram of their method and the time it was entered
+	public static void exit(long[] histogram, long start)
+	{
+		long duration = System.nanoTime() - start;
+		histogram[getBucket(duration)]++;
+		histogram[Calls]++;
+		histogram[Total] += duration;
+	}
+
+	private static int getBucket(long duration)
+	{
+		if(duration < SubBuckets)
+			return duration < 0 ? 0 : (int)duration;
+		int exponent = 63 - Long.numberOfLeadingZeros(duration);
+		return (exponent - 2) * SubBuckets + (int)(duration >>> (exponent - 3)) - SubBuckets;
+	}
+
+	private static long getLowerBound(int bucket)
+	{
+		return bucket < SubBuckets ? bucket : (long)(SubBuckets + bucket % SubBuckets) << (bucket / SubBuckets - 1);
+	}
+
+	// the upper bound of the bucket the given share of the calls does not exceed
+	private static long getPercentile(long[] histogram, double share)
+	{
+		long calls = (long)Math.ceil(histogram[Calls] * share);
+		long counted = 0;
+		for(int bucket = 0; bucket < Buckets; bucket++)
+		{
+			counted += histogram[bucket];
+			if(counted >= calls)
+				return bucket + 1 < Buckets ? getLowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+		}
+		return Long.MAX_VALUE;
+	}
+
+	public static synchronized void save(File file) throws IOException
+	{
+		// the histograms keep changing on the render thread, so each is copied once and only the copies are read
+		final Map<String, long[]> methods = new TreeMap<String, long[]>();
+		long calls = 0;
+		for(Map.Entry<String, long[]> entry : histograms.entrySet())
+		{
+			long[] histogram = entry.getValue().clone();
+			methods.put(entry.getKey(), histogram);
+			calls += histogram[Calls];
+		}
+		if(calls == saved)
+			return;
+
+		List<String> ranked = new ArrayList<String>(methods.keySet());
+		Collections.sort(ranked, new Comparator<String>()
+		{
+			@Override
+			public int compare(String first, String second)
+			{
+				long[] firstHistogram = methods.get(first);
+				long[] secondHistogram = methods.get(second);
+				int difference = Long.compare(getPercentile(secondHistogram, 0.99), getPercentile(firstHistogram, 0.99));
+				return difference != 0 ? difference : Long.compare(getPercentile(secondHistogram, 0.5), getPercentile(firstHistogram, 0.5));
+			}
+		});
+
+		File temporary = new File(file.getPath() + ".tmp");
+		PrintWriter printer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(temporary), "UTF-8"));
+		try
+		{
+			printer.println("######################################################");
+			printer.println("# Render Player API Enhancer render profile");
+			printer.println("######################################################");
+			printer.println("# * time per call of the local render, rotation angle and living animation methods of enhanced classes");
+			printer.println("# * percentiles are upper bounds in microseconds, precise to an eighth");
+			printer.println("# * methods with the highest 99th percentile first");
+			printer.println("######################################################");
+			printer.println();
+			printer.println(calls + " calls of " + methods.size() + " methods");
+			printer.println();
+			for(String method : ranked)
+			{
+				long[] histogram = methods.get(method);
+				printer.println(String.format(Locale.ROOT, "%s: %d calls, mean %.2f, p50 %.2f, p99 %.2f, max %.2f", method, histogram[Calls], histogram[Total] / 1000D / Math.max(histogram[Calls], 1), getPercentile(histogram, 0.5) / 1000D, getPercentile(histogram, 0.99) / 1000D, getPercentile(histogram, 1) / 1000D));
+			}
+		}
+		finally
+		{
+			printer.close();
+		}
+
+		if(printer.checkError())
+			throw new IOException("could not write " + temporary);
+		if(!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file)))
+			throw new IOException("could not replace " + file);
+		saved = calls;
+	}
+}
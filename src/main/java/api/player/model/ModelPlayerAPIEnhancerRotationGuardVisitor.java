@@ -0,0 +1,94 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+// returns right away when the rotation angles are set for the same entity with the same six angle arguments as
+// during the previous call, otherwise remembers the arguments and runs the original code
+public class ModelPlayerAPIEnhancerRotationGuardVisitor extends MethodVisitor
+{
+	public static final String LocalName = "localSetRotationAngles";
+	public static final String EntityField = "enhancerRotationGuardEntity";
+	public static final String ArgumentField = "enhancerRotationGuardArgument";
+	public static final int ArgumentCount = 6;
+
+	private final String className;
+	private final String entityDesc;
+	private final boolean hasFrames;
+
+	public ModelPlayerAPIEnhancerRotationGuardVisitor(MethodVisitor paramMethodVisitor, String className, String desc, boolean hasFrames)
+	{
+		super(262144, paramMethodVisitor);
+		this.className = className;
+		this.entityDesc = getEntityDesc(desc);
+		this.hasFrames = hasFrames;
+	}
+
+	@Override
+	public void visitCode()
+	{
+		super.visitCode();
+
+		Label run = new Label();
+		super.visitVarInsn(Opcodes.ALOAD, ArgumentCount + 1);
+		super.visitJumpInsn(Opcodes.IFNULL, run);
+		super.visitVarInsn(Opcodes.ALOAD, ArgumentCount + 1);
+		super.visitVarInsn(Opcodes.ALOAD, 0);
+		super.visitFieldInsn(Opcodes.GETFIELD, className, EntityField, entityDesc);
+		super.visitJumpInsn(Opcodes.IF_ACMPNE, run);
+		for(int i = 0; i < ArgumentCount; i++)
+		{
+			super.visitVarInsn(Opcodes.FLOAD, i + 1);
+			super.visitVarInsn(Opcodes.ALOAD, 0);
+			super.visitFieldInsn(Opcodes.GETFIELD, className, ArgumentField + i, "F");
+			super.visitInsn(Opcodes.FCMPL);
+			super.visitJumpInsn(Opcodes.IFNE, run);
+		}
+		super.visitInsn(Opcodes.RETURN);
+
+		super.visitLabel(run);
+		if(hasFrames)
+			super.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+		super.visitVarInsn(Opcodes.ALOAD, 0);
+		super.visitVarInsn(Opcodes.ALOAD, ArgumentCount + 1);
+		super.visitFieldInsn(Opcodes.PUTFIELD, className, EntityField, entityDesc);
+		for(int i = 0; i < ArgumentCount; i++)
+		{
+			super.visitVarInsn(Opcodes.ALOAD, 0);
+			super.visitVarInsn(Opcodes.FLOAD, i + 1);
+			super.visitFieldInsn(Opcodes.PUTFIELD, className, ArgumentField + i, "F");
+		}
+	}
+
+	@Override
+	public void visitMaxs(int maxStack, int maxLocals)
+	{
+		super.visitMaxs(Math.max(maxStack, 2), maxLocals);
+	}
+
+	public static String getEntityDesc(String desc)
+	{
+		return Type.getArgumentTypes(desc)[ArgumentCount].getDescriptor();
+	}
+}
@@ -0,0 +1,96 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import java.util.*;
+
+// called by the hoisted array allocations of enhanced classes, so it must not depend on anything only needed while enhancing
+public final class ModelPlayerAPIEnhancerScratchArrays
+{
+	private ModelPlayerAPIEnhancerScratchArrays()
+	{
+	}
+
+	// each method returns the given array cleared as if it was just created, or a new one the first time
+
+	public static boolean[] booleans(int length, boolean[] array)
+	{
+		if(array == null || array.length != length)
+			return new boolean[length];
+		Arrays.fill(array, false);
+		return array;
+	}
+
+	public static char[] chars(int length, char[] array)
+	{
+		if(array == null || array.length != length)
+			return new char[length];
+		Arrays.fill(array, (char)0);
+		return array;
+	}
+
+	public static float[] floats(int length, float[] array)
+	{
+		if(array == null || array.length != length)
+			return new float[length];
+		Arrays.fill(array, 0F);
+		return array;
+	}
+
+	public static double[] doubles(int length, double[] array)
+	{
+		if(array == null || array.length != length)
+			return new double[length];
+		Arrays.fill(array, 0D);
+		return array;
+	}
+
+	public static byte[] bytes(int length, byte[] array)
+	{
+		if(array == null || array.length != length)
+			return new byte[length];
+		Arrays.fill(array, (byte)0);
+		return array;
+	}
+
+	public static short[] shorts(int length, short[] array)
+	{
+		if(array == null || array.length != length)
+			return new short[length];
+		Arrays.fill(array, (short)0);
+		return array;
+	}
+
+	public static int[] ints(int length, int[] array)
+	{
+		if(array == null || array.length != length)
+			return new int[length];
+		Arrays.fill(array, 0);
+		return array;
+	}
+
+	public static long[] longs(int length, long[] array)
+	{
+		if(array == null || array.length != length)
+			return new long[length];
+		Arrays.fill(array, 0L);
+		return array;
+	}
+}
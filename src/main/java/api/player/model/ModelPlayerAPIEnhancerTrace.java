@@ -0,0 +1,139 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+// spans of the class enhancement in a ring buffer allocated with the first span, saved in the trace event format of the
+// Chrome trace viewer
+public final class ModelPlayerAPIEnhancerTrace
+{
+	public static final int Capacity = 1 << 15;
+
+	// checked before every span, so a disabled trace costs nothing else
+	public static boolean enabled;
+
+	private static final long origin = System.nanoTime();
+
+	// only allocated with the first span, so the buffer takes no memory while the trace is disabled
+	private static final class Buffer
+	{
+		// the names publish the other fields of their spans to the thread saving them
+		private static final AtomicReferenceArray<String> names = new AtomicReferenceArray<String>(Capacity);
+		private static final String[] classNames = new String[Capacity];
+		private static final String[] threadNames = new String[Capacity];
+		private static final long[] threadIds = new long[Capacity];
+		private static final long[] starts = new long[Capacity];
+		private static final long[] ends = new long[Capacity];
+		private static final AtomicLong next = new AtomicLong();
+	}
+
+	private ModelPlayerAPIEnhancerTrace()
+	{
+	}
+
+	// a span that ends now
+	public static void add(String name, String className, long start)
+	{
+		add(name, className, start, System.nanoTime());
+	}
+
+	// the oldest spans are overwritten once the buffer is full, the name is set last so spans still being written when saving are skipped
+	public static void add(String name, String className, long start, long end)
+	{
+		Thread thread = Thread.currentThread();
+		int span = (int)(Buffer.next.getAndIncrement() & (Capacity - 1));
+		Buffer.names.set(span, null);
+		Buffer.classNames[span] = className;
+		Buffer.threadNames[span] = thread.getName();
+		Buffer.threadIds[span] = thread.getId();
+		Buffer.starts[span] = start;
+		Buffer.ends[span] = end;
+		Buffer.names.lazySet(span, name);
+	}
+
+	public static synchronized void save(File file) throws IOException
+	{
+		long count = Buffer.next.get();
+		int first = (int)Math.max(0, count - Capacity);
+
+		File temporary = new File(file.getPath() + ".tmp");
+		PrintWriter printer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(temporary), "UTF-8"));
+		try
+		{
+			printer.println("{\"displayTimeUnit\":\"ms\",\"otherData\":{\"spans\":" + count + ",\"overwritten\":" + first + "},\"traceEvents\":[");
+			boolean separate = false;
+			Set<Long> threads = new HashSet<Long>();
+			for(long i = first; i < count; i++)
+			{
+				int span = (int)(i & (Capacity - 1));
+				String name = Buffer.names.get(span);
+				if(name == null)
+					continue;
+
+				if(threads.add(Buffer.threadIds[span]))
+				{
+					printer.println((separate ? "," : "") + "{\"ph\":\"M\",\"name\":\"thread_name\",\"pid\":1,\"tid\":" + Buffer.threadIds[span] + ",\"args\":{\"name\":\"" + escape(Buffer.threadNames[span]) + "\"}}");
+					separate = true;
+				}
+				printer.println((separate ? "," : "") + "{\"ph\":\"X\",\"cat\":\"enhancer\",\"name\":\"" + name + "\",\"pid\":1,\"tid\":" + Buffer.threadIds[span] + ",\"ts\":" + micros(Buffer.starts[span] - origin) + ",\"dur\":" + micros(Buffer.ends[span] - Buffer.starts[span]) + ",\"args\":{\"class\":\"" + escape(Buffer.classNames[span]) + "\"}}");
+				separate = true;
+			}
+			printer.println("]}");
+		}
+		finally
+		{
+			printer.close();
+		}
+
+		if(printer.checkError())
+			throw new IOException("could not write " + temporary);
+		if(!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file)))
+			throw new IOException("could not replace " + file);
+	}
+
+	// the trace event format counts in microseconds
+	private static String micros(long nanos)
+	{
+		String fraction = String.valueOf(1000 + Math.abs(nanos % 1000)).substring(1);
+		return (nanos < 0 && nanos > -1000 ? "-" : "") + nanos / 1000 + "." + fraction;
+	}
+
+	private static String escape(String text)
+	{
+		if(text == null)
+			return "";
+
+		StringBuilder builder = new StringBuilder(text.length());
+		for(int i = 0; i < text.length(); i++)
+		{
+			char c = text.charAt(i);
+			if(c == '"' || c == '\\')
+				builder.append('\\').append(c);
+			else if(c < ' ')
+				builder.append(String.format("\\u%04x", (int)c));
+			else
+				builder.append(c);
+		}
+		return builder.toString();
+	}
+}
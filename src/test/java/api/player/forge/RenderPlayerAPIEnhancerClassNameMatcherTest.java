@@ -0,0 +1,48 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+
+package api.player.forge;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+public class RenderPlayerAPIEnhancerClassNameMatcherTest
+{
+	@Test
+	public void matchesPatternsWithTheSameNamedGroup()
+	{
+		RenderPlayerAPIEnhancerClassNameMatcher matcher = new RenderPlayerAPIEnhancerClassNameMatcher(Collections.<String>emptyList(), Arrays.asList("com\\.example\\.(?<m>Model)Armor", "org\\.example\\.(?<m>Model)Robe"));
+		assertEquals("com\\.example\\.(?<m>Model)Armor", matcher.match("com.example.ModelArmor").text);
+		assertEquals("org\\.example\\.(?<m>Model)Robe", matcher.match("org.example.ModelRobe").text);
+		assertNull(matcher.match("net.example.ModelArmor"));
+	}
+
+	@Test
+	public void combinesPatternsWithLookbehinds()
+	{
+		RenderPlayerAPIEnhancerClassNameMatcher matcher = new RenderPlayerAPIEnhancerClassNameMatcher(Collections.<String>emptyList(), Arrays.asList("com\\.example\\..*(?<=Armor)", "org\\.example\\..*(?<!Robe)"));
+		assertEquals("com\\.example\\..*(?<=Armor)", matcher.match("com.example.ModelArmor").text);
+		assertEquals("org\\.example\\..*(?<!Robe)", matcher.match("org.example.ModelWings").text);
+		assertNull(matcher.match("org.example.ModelRobe"));
+	}
+}
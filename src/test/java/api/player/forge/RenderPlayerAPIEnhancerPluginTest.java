@@ -0,0 +1,82 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+
+package api.player.forge;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.Test;
+
+public class RenderPlayerAPIEnhancerPluginTest
+{
+	@Test
+	public void excludesIncludedPackagesInAnyOrder() throws IOException
+	{
+		for(String classNames : new String[] { "com.example.*\n-com.example.*\n", "-com.example.*\ncom.example.*\n" })
+		{
+			configure(classNames);
+			assertEquals(classNames, RenderPlayerAPIEnhancerClassNameMatcher.CanonicalClassNameExclusion, RenderPlayerAPIEnhancerPlugin.classNameMatcher.match("com.example.ModelArmor").kind);
+		}
+	}
+
+	@Test
+	public void disablesDefaultsInAnyOrder() throws IOException
+	{
+		for(String classNames : new String[] { "!-com.google.*\ncom.google.*\n", "com.google.*\n!-com.google.*\n" })
+		{
+			configure(classNames);
+			assertEquals(classNames, RenderPlayerAPIEnhancerClassNameMatcher.CanonicalClassNamePrefix, RenderPlayerAPIEnhancerPlugin.classNameMatcher.match("com.google.ModelArmor").kind);
+			assertFalse(classNames, RenderPlayerAPIEnhancerPlugin.canonicalClassNames.contains("-com.google.*"));
+		}
+	}
+
+	@Test
+	public void disablesDefaultClassNamesWithMinusAsBefore() throws IOException
+	{
+		configure("-thaumcraft.client.renderers.models.gear.ModelRobe\n");
+		assertFalse(RenderPlayerAPIEnhancerPlugin.canonicalClassNames.contains("thaumcraft.client.renderers.models.gear.ModelRobe"));
+		assertNull(RenderPlayerAPIEnhancerPlugin.classNameMatcher.match("thaumcraft.client.renderers.models.gear.ModelRobe"));
+	}
+
+	private static void configure(String classNames) throws IOException
+	{
+		File directory = File.createTempFile("render_player_api_Enhancer_test", "");
+		if(!directory.delete() || !directory.mkdir())
+			throw new IOException("could not create " + directory);
+
+		File file = new File(directory, "render_player_api_Enhancer_classnames.txt");
+		Writer writer = new FileWriter(file);
+		try
+		{
+			writer.write(classNames);
+		}
+		finally
+		{
+			writer.close();
+		}
+
+		RenderPlayerAPIEnhancerPlugin.configure(directory);
+		for(File child : directory.listFiles())
+			child.delete();
+		directory.delete();
+	}
+}
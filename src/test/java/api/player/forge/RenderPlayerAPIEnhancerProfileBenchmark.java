@@ -0,0 +1,110 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.forge;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.zip.*;
+
+import org.apache.logging.log4j.*;
+import org.apache.logging.log4j.core.config.*;
+
+import net.minecraft.launchwrapper.*;
+import api.player.model.*;
+
+// compares the time the transformer spends enhancing the armor models of a mod file on the class loading path with the
+// time it spends picking them up from the profile of the previous start: gradlew benchmark -Pbenchmark=<this class>
+public class RenderPlayerAPIEnhancerProfileBenchmark
+{
+	private static final int ClassCount = 200;
+	private static final long Configuration = 0x52504150L;
+
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		Configurator.setLevel("RenderPlayerAPIEnhancer", Level.WARN);
+
+		File directory = File.createTempFile("render_player_api_Enhancer_benchmark", "");
+		if(!directory.delete() || !directory.mkdir())
+			throw new IOException("could not create " + directory);
+
+		String[] names = new String[ClassCount];
+		byte[][] classes = new byte[ClassCount][];
+		File mod = new File(directory, "armor.jar");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(mod));
+		try
+		{
+			for(int i = 0; i < ClassCount; i++)
+			{
+				names[i] = "com.example.armor.ModelArmor" + i;
+				classes[i] = ModelPlayerAPIEnhancerTestClasses.generateArmorModel(names[i].replace('.', '/'), 30, 20);
+				out.putNextEntry(new ZipEntry(names[i].replace('.', '/') + ".class"));
+				out.write(classes[i]);
+				out.closeEntry();
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+		Launch.classLoader = new LaunchClassLoader(new URL[] { mod.toURI().toURL() });
+
+		// the first run warms up, so both ways enhance with compiled code
+		File file = new File(directory, "render_player_api_Enhancer_profile.bin");
+		RenderPlayerAPIEnhancerProfile profile = new RenderPlayerAPIEnhancerProfile(file, Configuration);
+		enhance(names, classes);
+		long synchronous = enhance(names, classes);
+		for(int i = 0; i < ClassCount; i++)
+			profile.record(names[i], names[i], classes[i], null);
+		profile.save();
+
+		System.out.printf("%d classes: enhanced on the class loading path in %.1f ms%n", ClassCount, synchronous / 1e6);
+		for(long headStart : new long[] { 0, 50, 200 })
+		{
+			// the time the game spends loading other classes before the first armor model
+			profile = new RenderPlayerAPIEnhancerProfile(file, Configuration);
+			Thread.sleep(headStart);
+
+			// classes still being enhanced in the background are enhanced on the class loading path like in the transformer
+			int served = 0;
+			long start = System.nanoTime();
+			for(int i = 0; i < ClassCount; i++)
+				if(profile.take(names[i], classes[i], null) != null)
+					served++;
+				else
+					RenderPlayerAPIEnhancerTransformer.enhance(names[i], classes[i], null, 0);
+			long time = System.nanoTime() - start;
+			System.out.printf("%d classes: picked up %d classes enhanced in the background %d ms after the start in %.1f ms (%.1fx)%n", ClassCount, served, headStart, time / 1e6, (double)synchronous / time);
+		}
+
+		file.delete();
+		mod.delete();
+		directory.delete();
+	}
+
+	private static long enhance(String[] names, byte[][] classes)
+	{
+		long start = System.nanoTime();
+		for(int i = 0; i < names.length; i++)
+			if(RenderPlayerAPIEnhancerTransformer.enhance(names[i], classes[i], null, 0) == classes[i])
+				throw new IllegalStateException(names[i]);
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,92 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import java.io.*;
+import java.lang.invoke.*;
+
+import org.apache.logging.log4j.*;
+import org.apache.logging.log4j.core.config.*;
+
+import net.minecraft.client.model.*;
+import net.minecraft.entity.*;
+import api.player.model.armor.*;
+
+// compares the time per call of an armor model method without and with the allocation sampling probe at different
+// sampling intervals, and prints the sampled allocation rates: gradlew benchmark -Pbenchmark=<this class>
+public class ModelPlayerAPIEnhancerAllocationSamplerBenchmark
+{
+	private static final int Calls = 2000000;
+	private static final int Runs = 8;
+
+	public static void main(String[] args) throws Throwable
+	{
+		Configurator.setLevel("RenderPlayerAPIEnhancer", Level.WARN);
+		if(!ModelPlayerAPIEnhancerAllocationSampler.isSupported())
+		{
+			System.out.println("this virtual machine doesn't count the bytes its threads allocate");
+			return;
+		}
+
+		byte[] bytes = ModelPlayerAPIEnhancerTestClasses.read(ModelScaleArmor.class);
+		double unprobed = measure(bytes, 0);
+		System.out.printf("without sampling: %.1f ns per call%n", unprobed);
+		for(int interval : new int[] { 1, 16, 256 })
+		{
+			ModelPlayerAPIEnhancerAllocationSampler.interval = interval;
+			double probed = measure(bytes, ModelPlayerAPIEnhancerClassVisitor.AllocationSampling);
+			System.out.printf("sampling one in %d calls: %.1f ns per call, %.1f ns or %.1f%% overhead%n", interval, probed, probed - unprobed, (probed - unprobed) * 100 / unprobed);
+		}
+
+		File file = File.createTempFile("render_player_api_Enhancer_allocation_rates", ".txt");
+		ModelPlayerAPIEnhancerAllocationSampler.save(file);
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try
+		{
+			for(String line; (line = reader.readLine()) != null;)
+				if(!line.isEmpty() && !line.startsWith("#"))
+					System.out.println(line);
+		}
+		finally
+		{
+			reader.close();
+		}
+		file.delete();
+	}
+
+	// the average time in nanoseconds one call takes in the fastest of several runs, which are the least disturbed
+	private static double measure(byte[] bytes, int features) throws Throwable
+	{
+		byte[] enhanced = ModelPlayerAPIEnhancerClassVisitor.transform(bytes, false, ModelPlayerAPIEnhancerTestClasses.ArmorBase, features);
+		Class<?> enhancedClass = ModelPlayerAPIEnhancerTestClasses.define(ModelScaleArmor.class.getName(), enhanced);
+		ModelBiped model = (ModelBiped)enhancedClass.getConstructor(float.class).newInstance(0.5F);
+		MethodHandle method = MethodHandles.publicLookup().findVirtual(enhancedClass, "localSetRotationAngles", MethodType.methodType(void.class, float.class, float.class, float.class, float.class, float.class, float.class, Entity.class)).asType(MethodType.methodType(void.class, ModelBiped.class, float.class, float.class, float.class, float.class, float.class, float.class, Entity.class));
+
+		long time = Long.MAX_VALUE;
+		for(int run = 0; run < Runs; run++)
+		{
+			long start = System.nanoTime();
+			for(int i = 0; i < Calls; i++)
+				method.invokeExact(model, 0.0F, 0.0F, (float)i, 0.0F, 0.0F, 0.0625F, (Entity)null);
+			time = Math.min(time, System.nanoTime() - start);
+		}
+		return (double)time / Calls;
+	}
+}
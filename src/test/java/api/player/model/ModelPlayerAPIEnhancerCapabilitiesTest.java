@@ -0,0 +1,83 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+
+package api.player.model;
+
+import static api.player.model.ModelPlayerAPIEnhancerTestClasses.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.Test;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+
+import api.player.model.armor.*;
+
+public class ModelPlayerAPIEnhancerCapabilitiesTest
+{
+	private static final ModelPlayerAPIEnhancerMappings mappings = ModelPlayerAPIEnhancerMappings.get(false);
+
+	@Test
+	public void recordsHooksOfArmorModel() throws IOException
+	{
+		assertHooks(parse(ModelPlayerAPIEnhancerClassVisitor.transform(read(ModelHornArmor.class), false)));
+	}
+
+	@Test
+	public void recordsHooksOfArmorModelWhenPatching() throws IOException
+	{
+		assertHooks(parse(ModelPlayerAPIEnhancerConstantPoolPatcher.patch(read(ModelHornArmor.class), false, null, 0)));
+	}
+
+	@Test
+	public void recordsOwnHooksOfArmorModelThroughEnhancedSuperClass() throws IOException
+	{
+		ClassNode node = parse(ModelPlayerAPIEnhancerClassVisitor.transform(read(ModelWingArmor.class), false, ArmorBase));
+		assertTrue(node.interfaces.contains(ModelPlayerAPIEnhancerClassFile.Capabilities));
+		assertEquals(getHooks("localSetRotationAngles"), getMask(node, 0));
+		assertEquals(getHooks("localSetVisible"), getMask(node, 1));
+		assertEquals(0, getMask(node, 2));
+	}
+
+	private static void assertHooks(ClassNode node)
+	{
+		assertTrue(node.interfaces.contains(ModelPlayerAPIEnhancerClassFile.Capabilities));
+		assertEquals(getHooks("localRender", "localGetArmForSide"), getMask(node, 0));
+		assertEquals(getHooks("localSetRotationAngles"), getMask(node, 1));
+		assertEquals(getHooks("localSetLivingAnimations"), getMask(node, 2));
+	}
+
+	private static int getHooks(String... localNames)
+	{
+		int hooks = 0;
+		for(String localName : localNames)
+			hooks |= 1 << mappings.getLocalHook(localName);
+		return hooks;
+	}
+
+	private static int getMask(ClassNode node, int index)
+	{
+		for(FieldNode field : node.fields)
+			if(field.name.equals(ModelPlayerAPIEnhancerClassFile.CapabilityFields[index]))
+				return (Integer)field.value;
+		throw new AssertionError("missing field " + ModelPlayerAPIEnhancerClassFile.CapabilityFields[index]);
+	}
+}
@@ -0,0 +1,119 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import static api.player.model.ModelPlayerAPIEnhancerTestClasses.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import api.player.model.armor.*;
+
+public class ModelPlayerAPIEnhancerClassVisitorTest
+{
+	private static final Class<?>[] UnrelatedClasses = new Class<?>[] { ModelSkull.class, ArmorModels.class };
+
+	@Test
+	public void leavesUnrelatedClassesUntouched() throws IOException
+	{
+		for(Class<?> type : UnrelatedClasses)
+		{
+			byte[] bytes = read(type);
+			assertFalse(type.getName(), ModelPlayerAPIEnhancerClassFile.mightExtendModelBiped(bytes, false));
+			assertSame(type.getName(), bytes, ModelPlayerAPIEnhancerClassVisitor.transform(bytes, false));
+			assertSame(type.getName(), bytes, ModelPlayerAPIEnhancerClassVisitor.transform(bytes, false, ArmorBase));
+		}
+	}
+
+	@Test
+	public void leavesUnrelatedClassesUntouchedWithoutParsingThem() throws IOException
+	{
+		// everything behind the super class is garbage now, which only a class reader would notice
+		for(Class<?> type : UnrelatedClasses)
+		{
+			byte[] bytes = read(type);
+			Arrays.fill(bytes, ModelPlayerAPIEnhancerClassFile.getConstantPoolEnd(bytes) + 6, bytes.length, (byte)0xFF);
+			assertSame(type.getName(), bytes, ModelPlayerAPIEnhancerClassVisitor.transform(bytes, false));
+		}
+	}
+
+	@Test
+	public void leavesSubClassesOfOtherClassesUntouched() throws IOException
+	{
+		byte[] bytes = read(ModelWingArmor.class);
+		assertSame(bytes, ModelPlayerAPIEnhancerClassVisitor.transform(bytes, false));
+	}
+
+	@Test
+	public void enhancesArmorModel() throws IOException
+	{
+		ClassNode node = parse(ModelPlayerAPIEnhancerClassVisitor.transform(read(ModelHornArmor.class), false));
+		assertEquals(ModelPlayerArmor, node.superName);
+
+		// renamed because they don't call their super methods
+		assertNull(getMethod(node, "render", RenderDesc));
+		assertNotNull(getMethod(node, "localRender", RenderDesc));
+		assertNull(getMethod(node, "getArmForSide", GetArmForSideDesc));
+		assertNotNull(getMethod(node, "localGetArmForSide", GetArmForSideDesc));
+
+		// kept because it calls its super method
+		assertNotNull(getMethod(node, "setRotationAngles", SetRotationAnglesDesc));
+		assertNull(getMethod(node, "localSetRotationAngles", SetRotationAnglesDesc));
+
+		assertEquals(ModelPlayerArmor + ".<init> " + ModelPlayerAPIEnhancerClassFile.ModelRenderer + ".<init>", getMethodCalls(getMethod(node, "<init>", "(F)V"), Opcodes.INVOKESPECIAL));
+		assertEquals(ModelPlayerAPIEnhancerClassFile.ModelBiped + ".setRotationAngles", getMethodCalls(getMethod(node, "setRotationAngles", SetRotationAnglesDesc), Opcodes.INVOKESPECIAL));
+
+		// the super call skips the local implementation, the new model biped stays one
+		MethodNode renderWithoutHorn = getMethod(node, "renderWithoutHorn", "(Lnet/minecraft/entity/Entity;F)V");
+		assertEquals(ModelPlayerArmor + ".localRender " + ModelPlayerAPIEnhancerClassFile.ModelBiped + ".<init>", getMethodCalls(renderWithoutHorn, Opcodes.INVOKESPECIAL));
+		assertEquals(ModelPlayerAPIEnhancerClassFile.ModelBiped + ".render", getMethodCalls(renderWithoutHorn, Opcodes.INVOKEVIRTUAL));
+	}
+
+	@Test
+	public void enhancesArmorModelWithoutHooks() throws IOException
+	{
+		byte[] bytes = read(ModelPlainArmor.class);
+		ClassNode node = parse(ModelPlayerAPIEnhancerClassVisitor.transform(bytes, false));
+		assertEquals(ModelPlayerArmor, node.superName);
+		assertEquals(ModelPlayerArmor + ".<init> " + ModelPlayerAPIEnhancerClassFile.ModelRenderer + ".<init>", getMethodCalls(getMethod(node, "<init>", "(F)V"), Opcodes.INVOKESPECIAL));
+	}
+
+	@Test
+	public void enhancesArmorModelThroughEnhancedSuperClass() throws IOException
+	{
+		ClassNode base = parse(ModelPlayerAPIEnhancerClassVisitor.transform(read(ModelArmorBase.class), false));
+		assertEquals(ModelPlayerArmor, base.superName);
+		assertNotNull(getMethod(base, "localRender", RenderDesc));
+
+		ClassNode node = parse(ModelPlayerAPIEnhancerClassVisitor.transform(read(ModelWingArmor.class), false, ArmorBase));
+		assertEquals(ArmorBase, node.superName);
+		assertNull(getMethod(node, "setRotationAngles", SetRotationAnglesDesc));
+		assertNotNull(getMethod(node, "localSetRotationAngles", SetRotationAnglesDesc));
+		assertNotNull(getMethod(node, "setVisible", SetVisibleDesc));
+		assertEquals(ArmorBase + ".<init> " + ModelPlayerAPIEnhancerClassFile.ModelRenderer + ".<init> " + ModelPlayerAPIEnhancerClassFile.ModelRenderer + ".<init>", getMethodCalls(getMethod(node, "<init>", "(F)V"), Opcodes.INVOKESPECIAL));
+		assertEquals(ArmorBase + ".setVisible", getMethodCalls(getMethod(node, "setVisible", SetVisibleDesc), Opcodes.INVOKESPECIAL));
+	}
+}
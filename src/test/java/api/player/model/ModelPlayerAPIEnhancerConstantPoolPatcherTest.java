@@ -0,0 +1,183 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import static api.player.model.ModelPlayerAPIEnhancerTestClasses.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.Test;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.LocalVariableNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.MultiANewArrayInsnNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import api.player.model.armor.*;
+
+// the patcher and the class visitor have to produce the same classes, apart from the order of their constant pools
+public class ModelPlayerAPIEnhancerConstantPoolPatcherTest
+{
+	@Test
+	public void patchesLikeClassVisitor() throws IOException
+	{
+		assertPatchesLikeClassVisitor(ModelHornArmor.class, null);
+		assertPatchesLikeClassVisitor(ModelPlainArmor.class, null);
+		assertPatchesLikeClassVisitor(ModelArmorBase.class, null);
+		assertPatchesLikeClassVisitor(ModelWingArmor.class, ArmorBase);
+	}
+
+	@Test
+	public void leavesUnrelatedClassesUntouched() throws IOException
+	{
+		for(Class<?> type : new Class<?>[] { ModelSkull.class, ArmorModels.class, ModelWingArmor.class })
+		{
+			byte[] bytes = read(type);
+			assertSame(type.getName(), bytes, ModelPlayerAPIEnhancerConstantPoolPatcher.patch(bytes, false, null));
+		}
+	}
+
+	@Test
+	public void fallsBackForChangedCode() throws IOException
+	{
+		assertNull(ModelPlayerAPIEnhancerConstantPoolPatcher.patch(read(ModelHornArmor.class), false, null, ModelPlayerAPIEnhancerClassVisitor.AllocationReport));
+		assertNull(ModelPlayerAPIEnhancerConstantPoolPatcher.patch(read(ModelWingArmor.class), false, ArmorBase, ModelPlayerAPIEnhancerClassVisitor.AllocationHoisting));
+	}
+
+	private static void assertPatchesLikeClassVisitor(Class<?> type, String indirectSuperClassName) throws IOException
+	{
+		byte[] patched = ModelPlayerAPIEnhancerConstantPoolPatcher.patch(read(type), false, indirectSuperClassName);
+		assertNotNull(type.getName(), patched);
+		assertEquals(type.getName(), describe(ModelPlayerAPIEnhancerClassVisitor.transform(read(type), false, indirectSuperClassName)), describe(patched));
+	}
+
+	// everything the enhancement might change, with the fields and methods sorted and the labels numbered in their order
+	private static String describe(byte[] bytes)
+	{
+		ClassNode node = parse(bytes);
+		List<String> interfaces = new ArrayList<String>(node.interfaces);
+		Collections.sort(interfaces);
+		StringBuilder result = new StringBuilder();
+		result.append(node.version).append(' ').append(node.access).append(' ').append(node.name).append(" extends ").append(node.superName).append(" implements ").append(interfaces).append('\n');
+
+		List<String> members = new ArrayList<String>();
+		for(Object field : node.fields)
+			members.add(describe((FieldNode)field));
+		for(Object method : node.methods)
+			members.add(describe((MethodNode)method));
+		Collections.sort(members);
+		for(String member : members)
+			result.append(member);
+		return result.toString();
+	}
+
+	private static String describe(FieldNode field)
+	{
+		return "field " + field.access + " " + field.name + " " + field.desc + " " + field.value + "\n";
+	}
+
+	private static String describe(MethodNode method)
+	{
+		Map<LabelNode, Integer> labels = new HashMap<LabelNode, Integer>();
+		for(AbstractInsnNode instruction = method.instructions.getFirst(); instruction != null; instruction = instruction.getNext())
+			if(instruction instanceof LabelNode)
+				labels.put((LabelNode)instruction, labels.size());
+
+		StringBuilder result = new StringBuilder();
+		result.append("method ").append(method.access).append(' ').append(method.name).append(method.desc).append(' ').append(method.exceptions).append(" stack ").append(method.maxStack).append(" locals ").append(method.maxLocals).append('\n');
+		for(AbstractInsnNode instruction = method.instructions.getFirst(); instruction != null; instruction = instruction.getNext())
+			result.append("  ").append(describe(instruction, labels)).append('\n');
+		for(Object block : method.tryCatchBlocks)
+		{
+			TryCatchBlockNode tryCatchBlock = (TryCatchBlockNode)block;
+			result.append("  try ").append(labels.get(tryCatchBlock.start)).append(' ').append(labels.get(tryCatchBlock.end)).append(' ').append(labels.get(tryCatchBlock.handler)).append(' ').append(tryCatchBlock.type).append('\n');
+		}
+		if(method.localVariables != null)
+			for(Object variable : method.localVariables)
+			{
+				LocalVariableNode localVariable = (LocalVariableNode)variable;
+				result.append("  local ").append(localVariable.index).append(' ').append(localVariable.name).append(' ').append(localVariable.desc).append(' ').append(labels.get(localVariable.start)).append(' ').append(labels.get(localVariable.end)).append('\n');
+			}
+		return result.toString();
+	}
+
+	private static String describe(AbstractInsnNode instruction, Map<LabelNode, Integer> labels)
+	{
+		String opcode = instruction.getOpcode() + " ";
+		switch(instruction.getType())
+		{
+			case AbstractInsnNode.LABEL:
+				return "label " + labels.get(instruction);
+			case AbstractInsnNode.LINE:
+				return "line " + ((LineNumberNode)instruction).line + " " + labels.get(((LineNumberNode)instruction).start);
+			case AbstractInsnNode.FRAME:
+				return "frame " + ((FrameNode)instruction).type + " " + ((FrameNode)instruction).local + " " + ((FrameNode)instruction).stack;
+			case AbstractInsnNode.INT_INSN:
+				return opcode + ((IntInsnNode)instruction).operand;
+			case AbstractInsnNode.VAR_INSN:
+				return opcode + ((VarInsnNode)instruction).var;
+			case AbstractInsnNode.TYPE_INSN:
+				return opcode + ((TypeInsnNode)instruction).desc;
+			case AbstractInsnNode.FIELD_INSN:
+				return opcode + ((FieldInsnNode)instruction).owner + "." + ((FieldInsnNode)instruction).name + " " + ((FieldInsnNode)instruction).desc;
+			case AbstractInsnNode.METHOD_INSN:
+				return opcode + ((MethodInsnNode)instruction).owner + "." + ((MethodInsnNode)instruction).name + ((MethodInsnNode)instruction).desc;
+			case AbstractInsnNode.JUMP_INSN:
+				return opcode + labels.get(((JumpInsnNode)instruction).label);
+			case AbstractInsnNode.LDC_INSN:
+				return opcode + ((LdcInsnNode)instruction).cst;
+			case AbstractInsnNode.IINC_INSN:
+				return opcode + ((IincInsnNode)instruction).var + " " + ((IincInsnNode)instruction).incr;
+			case AbstractInsnNode.TABLESWITCH_INSN:
+				return opcode + ((TableSwitchInsnNode)instruction).min + " " + ((TableSwitchInsnNode)instruction).max + " " + describe(((TableSwitchInsnNode)instruction).labels, labels) + " " + labels.get(((TableSwitchInsnNode)instruction).dflt);
+			case AbstractInsnNode.LOOKUPSWITCH_INSN:
+				return opcode + ((LookupSwitchInsnNode)instruction).keys + " " + describe(((LookupSwitchInsnNode)instruction).labels, labels) + " " + labels.get(((LookupSwitchInsnNode)instruction).dflt);
+			case AbstractInsnNode.MULTIANEWARRAY_INSN:
+				return opcode + ((MultiANewArrayInsnNode)instruction).desc + " " + ((MultiANewArrayInsnNode)instruction).dims;
+			default:
+				return opcode;
+		}
+	}
+
+	private static String describe(List<?> targets, Map<LabelNode, Integer> labels)
+	{
+		List<Integer> result = new ArrayList<Integer>();
+		for(Object target : targets)
+			result.add(labels.get(target));
+		return result.toString();
+	}
+}
@@ -0,0 +1,94 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import org.apache.logging.log4j.*;
+import org.apache.logging.log4j.core.config.*;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+// compares the former full rewrite, which recomputed the maximums of every method, with the copy through of untouched
+// methods and with constant pool patching on armor models of growing size: gradlew benchmark -Pbenchmark=<this class>
+public class ModelPlayerAPIEnhancerCopyThroughBenchmark
+{
+	private static final int FullRewrite = 0;
+	private static final int CopyThrough = 1;
+	private static final int ConstantPoolPatching = 2;
+	private static final String[] Names = new String[] { "full rewrite", "copy through", "constant pool patching" };
+
+	private static final long Duration = 2000000000L;
+
+	public static void main(String[] args)
+	{
+		Configurator.setLevel("RenderPlayerAPIEnhancer", Level.WARN);
+
+		for(int partMethods : new int[] { 10, 100, 1000 })
+		{
+			byte[] bytes = ModelPlayerAPIEnhancerTestClasses.generateArmorModel("api/player/model/armor/ModelLargeArmor", partMethods, 20);
+			double[] times = new double[Names.length];
+			for(int mode = 0; mode < Names.length; mode++)
+			{
+				// the first run warms up
+				measure(mode, bytes);
+				times[mode] = measure(mode, bytes);
+			}
+
+			System.out.printf("%d part methods, %d bytes:", partMethods, bytes.length);
+			for(int mode = 0; mode < Names.length; mode++)
+				System.out.printf(" %s %.1f us (%.1fx)", Names[mode], times[mode] / 1000, times[FullRewrite] / times[mode]);
+			System.out.println();
+		}
+	}
+
+	// the average time in nanoseconds one enhancement takes
+	private static double measure(int mode, byte[] bytes)
+	{
+		int count = 0;
+		int size = 0;
+		long start = System.nanoTime();
+		long time;
+		do
+		{
+			size += enhance(mode, bytes).length;
+			count++;
+		}
+		while((time = System.nanoTime() - start) < Duration);
+
+		if(size == 0)
+			throw new IllegalStateException();
+		return (double)time / count;
+	}
+
+	private static byte[] enhance(int mode, byte[] bytes)
+	{
+		switch(mode)
+		{
+			case FullRewrite:
+				ClassReader cr = new ClassReader(bytes);
+				ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+				cr.accept(new ModelPlayerAPIEnhancerClassVisitor(cw, false, null, cr), 0);
+				return cw.toByteArray();
+			case CopyThrough:
+				return ModelPlayerAPIEnhancerClassVisitor.transform(bytes, false);
+			default:
+				return ModelPlayerAPIEnhancerConstantPoolPatcher.patch(bytes, false, null);
+		}
+	}
+}
@@ -0,0 +1,54 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+
+package api.player.model;
+
+import static api.player.model.ModelPlayerAPIEnhancerTestClasses.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.Test;
+import org.objectweb.asm.tree.ClassNode;
+
+import api.player.model.armor.*;
+
+public class ModelPlayerAPIEnhancerForwardingTest
+{
+	@Test
+	public void removesForwardingHooks() throws IOException
+	{
+		ClassNode node = parse(ModelPlayerAPIEnhancerClassVisitor.transform(read(ModelHornArmor.class), false));
+		assertNull(getMethod(node, "setLivingAnimations", SetLivingAnimationsDesc));
+		assertNull(getMethod(node, "localSetLivingAnimations", SetLivingAnimationsDesc));
+
+		// calls its super method but does more than that
+		assertNotNull(getMethod(node, "setRotationAngles", SetRotationAnglesDesc));
+	}
+
+	@Test
+	public void removesForwardingHooksWhenPatching() throws IOException
+	{
+		ClassNode node = parse(ModelPlayerAPIEnhancerConstantPoolPatcher.patch(read(ModelHornArmor.class), false, null, 0));
+		assertNull(getMethod(node, "setLivingAnimations", SetLivingAnimationsDesc));
+		assertNull(getMethod(node, "localSetLivingAnimations", SetLivingAnimationsDesc));
+		assertNotNull(getMethod(node, "setRotationAngles", SetRotationAnglesDesc));
+	}
+}
@@ -0,0 +1,83 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import java.lang.invoke.*;
+import java.lang.management.*;
+
+import org.apache.logging.log4j.*;
+import org.apache.logging.log4j.core.config.*;
+
+import net.minecraft.client.model.*;
+import net.minecraft.entity.*;
+import api.player.model.armor.*;
+
+// compares the bytes allocated per call of an armor model method that creates a scratch array on every call before and
+// after the allocation hoisting: gradlew benchmark -Pbenchmark=<this class>
+public class ModelPlayerAPIEnhancerHoistingBenchmark
+{
+	private static final int Calls = 10000000;
+
+	private static class EnhancedClassLoader extends ClassLoader
+	{
+		private EnhancedClassLoader()
+		{
+			super(EnhancedClassLoader.class.getClassLoader());
+		}
+
+		private Class<?> define(String name, byte[] bytes)
+		{
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+
+	public static void main(String[] args) throws Throwable
+	{
+		Configurator.setLevel("RenderPlayerAPIEnhancer", Level.WARN);
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		threads.setThreadAllocatedMemoryEnabled(true);
+		long thread = Thread.currentThread().getId();
+
+		byte[] bytes = ModelPlayerAPIEnhancerTestClasses.read(ModelScaleArmor.class);
+		MethodType type = MethodType.methodType(void.class, ModelBiped.class, float.class, float.class, float.class, float.class, float.class, float.class, Entity.class);
+		for(int features : new int[] { 0, ModelPlayerAPIEnhancerClassVisitor.AllocationHoisting })
+		{
+			byte[] enhanced = ModelPlayerAPIEnhancerClassVisitor.transform(bytes, false, ModelPlayerAPIEnhancerTestClasses.ArmorBase, features);
+			Class<?> enhancedClass = new EnhancedClassLoader().define(ModelScaleArmor.class.getName(), enhanced);
+			ModelBiped model = (ModelBiped)enhancedClass.getConstructor(float.class).newInstance(0.5F);
+			MethodHandle method = MethodHandles.publicLookup().findVirtual(enhancedClass, "localSetRotationAngles", MethodType.methodType(void.class, float.class, float.class, float.class, float.class, float.class, float.class, Entity.class)).asType(type);
+
+			// the first run warms up
+			for(int run = 0; run < 2; run++)
+			{
+				long allocated = threads.getThreadAllocatedBytes(thread);
+				long start = System.nanoTime();
+				for(int i = 0; i < Calls; i++)
+					method.invokeExact(model, 0.0F, 0.0F, (float)i, 0.0F, 0.0F, 0.0625F, (Entity)null);
+				long time = System.nanoTime() - start;
+				allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+
+				if(run > 0)
+					System.out.printf("%s: %.1f bytes and %.1f ns per call, %.1f MB per second%n", features == 0 ? "without hoisting" : "with hoisting", (double)allocated / Calls, (double)time / Calls, allocated * 1e3 / time);
+			}
+		}
+	}
+}
@@ -0,0 +1,199 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model;
+
+import java.io.*;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+// reads the class files of the test armor models and looks into the classes enhanced from them
+public final class ModelPlayerAPIEnhancerTestClasses
+{
+	public static final String ModelPlayerArmor = "api/player/model/ModelPlayerArmor";
+	public static final String ArmorBase = "api/player/model/armor/ModelArmorBase";
+	public static final String RenderDesc = "(Lnet/minecraft/entity/Entity;FFFFFF)V";
+	public static final String SetRotationAnglesDesc = "(FFFFFFLnet/minecraft/entity/Entity;)V";
+	public static final String SetLivingAnimationsDesc = "(Lnet/minecraft/entity/EntityLivingBase;FFF)V";
+	public static final String GetArmForSideDesc = "(Lnet/minecraft/util/EnumHandSide;)Lnet/minecraft/client/model/ModelRenderer;";
+	public static final String SetVisibleDesc = "(Z)V";
+	public static final String ModelRendererDesc = "L" + ModelPlayerAPIEnhancerClassFile.ModelRenderer + ";";
+
+	// loads each class it defines itself and everything else from the test class path
+	private static class EnhancedClassLoader extends ClassLoader
+	{
+		private EnhancedClassLoader()
+		{
+			super(EnhancedClassLoader.class.getClassLoader());
+		}
+
+		private Class<?> define(String name, byte[] bytes)
+		{
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+
+	private ModelPlayerAPIEnhancerTestClasses()
+	{
+	}
+
+	// the given enhanced class, loaded next to the original one
+	public static Class<?> define(String name, byte[] bytes)
+	{
+		return new EnhancedClassLoader().define(name, bytes);
+	}
+
+	public static byte[] read(Class<?> type) throws IOException
+	{
+		InputStream in = type.getResourceAsStream("/" + type.getName().replace('.', '/') + ".class");
+		if(in == null)
+			throw new FileNotFoundException(type.getName());
+
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			for(int read; (read = in.read(buffer)) >= 0;)
+				out.write(buffer, 0, read);
+			return out.toByteArray();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	public static ClassNode parse(byte[] bytes)
+	{
+		ClassNode node = new ClassNode();
+		new ClassReader(bytes).accept(node, 0);
+		return node;
+	}
+
+	// the method with the given name and descriptor or null
+	public static MethodNode getMethod(ClassNode node, String name, String desc)
+	{
+		for(Object method : node.methods)
+			if(((MethodNode)method).name.equals(name) && ((MethodNode)method).desc.equals(desc))
+				return (MethodNode)method;
+		return null;
+	}
+
+	// the owner and the name of all method calls with the given opcode in the given method, like "owner.name"
+	public static String getMethodCalls(MethodNode method, int opcode)
+	{
+		StringBuilder calls = new StringBuilder();
+		for(AbstractInsnNode instruction = method.instructions.getFirst(); instruction != null; instruction = instruction.getNext())
+			if(instruction.getOpcode() == opcode)
+			{
+				MethodInsnNode call = (MethodInsnNode)instruction;
+				if(calls.length() > 0)
+					calls.append(' ');
+				calls.append(call.owner).append('.').append(call.name);
+			}
+		return calls.toString();
+	}
+
+	// an armor model as big as the ones of mods that animate every part in its own method: a render method that doesn't
+	// call its super method, a rotation angles method that does and the given number of part methods in between
+	public static byte[] generateArmorModel(String className, int partMethods, int statements)
+	{
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES)
+		{
+			@Override
+			protected String getCommonSuperClass(String type1, String type2)
+			{
+				return "java/lang/Object";
+			}
+		};
+		cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, ModelPlayerAPIEnhancerClassFile.ModelBiped, null);
+
+		MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(F)V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitVarInsn(Opcodes.FLOAD, 1);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, ModelPlayerAPIEnhancerClassFile.ModelBiped, "<init>", "(F)V", false);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "render", RenderDesc, null, null);
+		mv.visitCode();
+		for(int i = 0; i < partMethods; i++)
+		{
+			mv.visitVarInsn(Opcodes.ALOAD, 0);
+			mv.visitVarInsn(Opcodes.FLOAD, 4);
+			mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, className, "animatePart" + i, "(F)V", false);
+		}
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "setRotationAngles", SetRotationAnglesDesc, null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		for(int i = 1; i <= 6; i++)
+			mv.visitVarInsn(Opcodes.FLOAD, i);
+		mv.visitVarInsn(Opcodes.ALOAD, 7);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, ModelPlayerAPIEnhancerClassFile.ModelBiped, "setRotationAngles", SetRotationAnglesDesc, false);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		String[] parts = new String[] { "bipedHead", "bipedBody", "bipedRightArm", "bipedLeftArm", "bipedRightLeg", "bipedLeftLeg" };
+		for(int i = 0; i < partMethods; i++)
+		{
+			mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "animatePart" + i, "(F)V", null, null);
+			mv.visitCode();
+			for(int j = 0; j < statements; j++)
+			{
+				// part.rotateAngleX += ageInTicks * factor, skipped for negative ages
+				Label skip = new Label();
+				mv.visitVarInsn(Opcodes.FLOAD, 1);
+				mv.visitInsn(Opcodes.FCONST_0);
+				mv.visitInsn(Opcodes.FCMPG);
+				mv.visitJumpInsn(Opcodes.IFLT, skip);
+				mv.visitVarInsn(Opcodes.ALOAD, 0);
+				mv.visitFieldInsn(Opcodes.GETFIELD, className, parts[(i + j) % parts.length], ModelRendererDesc);
+				mv.visitInsn(Opcodes.DUP);
+				mv.visitFieldInsn(Opcodes.GETFIELD, ModelPlayerAPIEnhancerClassFile.ModelRenderer, "rotateAngleX", "F");
+				mv.visitVarInsn(Opcodes.FLOAD, 1);
+				mv.visitLdcInsn((i * statements + j) * 0.001F);
+				mv.visitInsn(Opcodes.FMUL);
+				mv.visitInsn(Opcodes.FADD);
+				mv.visitFieldInsn(Opcodes.PUTFIELD, ModelPlayerAPIEnhancerClassFile.ModelRenderer, "rotateAngleX", "F");
+				mv.visitLabel(skip);
+			}
+			mv.visitInsn(Opcodes.RETURN);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+}
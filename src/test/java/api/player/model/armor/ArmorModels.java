@@ -0,0 +1,36 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model.armor;
+
+import net.minecraft.client.model.*;
+
+// no model at all, but it references the model biped class like the item classes of armor mods do
+public class ArmorModels
+{
+	private static ModelBiped horn;
+	private static ModelBiped wing;
+
+	public static ModelBiped getArmorModel(boolean wings)
+	{
+		if(wings)
+			return wing != null ? wing : (wing = new ModelWingArmor(0.5F));
+		return horn != null ? horn : (horn = new ModelHornArmor(1.0F));
+	}
+}
@@ -0,0 +1,76 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model.armor;
+
+import net.minecraft.client.model.*;
+import net.minecraft.entity.*;
+import net.minecraft.util.*;
+
+// an armor model overriding most hooks, some with and some without calling their super methods
+public class ModelHornArmor extends ModelBiped
+{
+	public ModelRenderer horn;
+
+	public ModelHornArmor(float modelSize)
+	{
+		super(modelSize);
+		horn = new ModelRenderer(this, 24, 0);
+		horn.addBox(-1.0F, -12.0F, -1.0F, 2, 4, 2, modelSize);
+		bipedHead.addChild(horn);
+	}
+
+	@Override
+	public void render(Entity entity, float limbSwing, float limbSwingAmount, float ageInTicks, float netHeadYaw, float headPitch, float scale)
+	{
+		setRotationAngles(limbSwing, limbSwingAmount, ageInTicks, netHeadYaw, headPitch, scale, entity);
+		horn.rotateAngleY = ageInTicks * 0.1F;
+		bipedHead.render(scale);
+		bipedBody.render(scale);
+	}
+
+	@Override
+	public void setRotationAngles(float limbSwing, float limbSwingAmount, float ageInTicks, float netHeadYaw, float headPitch, float scale, Entity entity)
+	{
+		super.setRotationAngles(limbSwing, limbSwingAmount, ageInTicks, netHeadYaw, headPitch, scale, entity);
+		horn.rotateAngleX = bipedHead.rotateAngleX * 0.5F;
+	}
+
+	@Override
+	public void setLivingAnimations(EntityLivingBase entity, float limbSwing, float limbSwingAmount, float partialTickTime)
+	{
+		super.setLivingAnimations(entity, limbSwing, limbSwingAmount, partialTickTime);
+	}
+
+	@Override
+	protected ModelRenderer getArmForSide(EnumHandSide side)
+	{
+		return side == EnumHandSide.LEFT ? bipedLeftArm : horn;
+	}
+
+	public void renderWithoutHorn(Entity entity, float scale)
+	{
+		horn.showModel = false;
+		super.render(entity, 0.0F, 0.0F, 0.0F, 0.0F, 0.0F, scale);
+		horn.showModel = true;
+
+		ModelBiped overlay = new ModelBiped(0.5F);
+		overlay.render(entity, 0.0F, 0.0F, 0.0F, 0.0F, 0.0F, scale);
+	}
+}
@@ -0,0 +1,36 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model.armor;
+
+import net.minecraft.client.model.*;
+
+// an armor model that only adds model parts and overrides no hooks
+public class ModelPlainArmor extends ModelBiped
+{
+	public ModelRenderer belt;
+
+	public ModelPlainArmor(float modelSize)
+	{
+		super(modelSize, 0.0F, 64, 64);
+		belt = new ModelRenderer(this, 16, 32);
+		belt.addBox(-4.0F, 10.0F, -2.0F, 8, 2, 4, modelSize);
+		bipedBody.addChild(belt);
+	}
+}
@@ -0,0 +1,52 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+
+package api.player.model.armor;
+
+import net.minecraft.entity.*;
+
+// an armor model creating a scratch array too large for the escape analysis of the JIT compiler on every call
+public class ModelScaleArmor extends ModelArmorBase
+{
+	public ModelScaleArmor(float modelSize)
+	{
+		super(modelSize);
+	}
+
+	@Override
+	public void setRotationAngles(float limbSwing, float limbSwingAmount, float ageInTicks, float netHeadYaw, float headPitch, float scale, Entity entity)
+	{
+		// the rows of scales ripple down the body, each one following the previous one a little later
+		float[] rows = new float[96];
+		for(int i = 0; i < rows.length; i++)
+			rows[i] = ageInTicks * 0.001F - i * 0.002F;
+		float ripple = 0.0F;
+		for(int i = 0; i < rows.length; i++)
+			ripple += rows[i];
+		bipedBody.rotateAngleX = ripple / rows.length;
+		bipedHead.rotateAngleY = netHeadYaw * 0.017453292F;
+	}
+
+	@Override
+	protected void renderParts(float scale)
+	{
+		bipedBody.render(scale);
+	}
+}
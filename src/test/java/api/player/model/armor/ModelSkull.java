@@ -0,0 +1,42 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model.armor;
+
+import net.minecraft.client.model.*;
+import net.minecraft.entity.*;
+
+// a model that is no armor model, it extends the model base class but not the model biped class
+public class ModelSkull extends ModelBase
+{
+	public ModelRenderer skull;
+
+	public ModelSkull()
+	{
+		skull = new ModelRenderer(this, 0, 0);
+		skull.addBox(-4.0F, -8.0F, -4.0F, 8, 8, 8, 0.0F);
+	}
+
+	@Override
+	public void render(Entity entity, float limbSwing, float limbSwingAmount, float ageInTicks, float netHeadYaw, float headPitch, float scale)
+	{
+		skull.rotateAngleY = netHeadYaw * 0.017453292F;
+		skull.render(scale);
+	}
+}
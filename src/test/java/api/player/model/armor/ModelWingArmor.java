@@ -0,0 +1,66 @@
+// ==================================================================
+// This file is part of Render Player API Enhancer.
+//
+// Render Player API Enhancer is free software: you can redistribute
+// it and/or modify it under the terms of the GNU Lesser General
+// Public License as published by the Free Software Foundation,
+// either version 3 of the License, or (at your option) any later
+// version.
+//
+// Render Player API Enhancer is distributed in the hope that it will
+// be useful, but WITHOUT ANY WARRANTY; without even the implied
+// warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License and the GNU General Public License along with Render
+// Player API Enhancer. If not, see <http://www.gnu.org/licenses/>.
+// ==================================================================
+
+package api.player.model.armor;
+
+import net.minecraft.client.model.*;
+import net.minecraft.entity.*;
+
+// an armor model extending the model biped class through another armor model
+public class ModelWingArmor extends ModelArmorBase
+{
+	public ModelRenderer leftWing;
+	public ModelRenderer rightWing;
+
+	public ModelWingArmor(float modelSize)
+	{
+		super(modelSize);
+		leftWing = new ModelRenderer(this, 0, 32);
+		leftWing.addBox(0.0F, 0.0F, 0.0F, 10, 12, 1, modelSize);
+		rightWing = new ModelRenderer(this, 0, 32);
+		rightWing.addBox(-10.0F, 0.0F, 0.0F, 10, 12, 1, modelSize);
+	}
+
+	@Override
+	public void setRotationAngles(float limbSwing, float limbSwingAmount, float ageInTicks, float netHeadYaw, float headPitch, float scale, Entity entity)
+	{
+		float[] flap = new float[2];
+		flap[0] = (float)Math.sin(ageInTicks * 0.2F) * 0.3F;
+		flap[1] = -flap[0];
+		leftWing.rotateAngleY = flap[0];
+		rightWing.rotateAngleY = flap[1];
+		bipedHead.rotateAngleY = netHeadYaw * 0.017453292F;
+	}
+
+	@Override
+	protected void renderParts(float scale)
+	{
+		bipedBody.render(scale);
+		leftWing.render(scale);
+		rightWing.render(scale);
+	}
+
+	@Override
+	public void setVisible(boolean visible)
+	{
+		super.setVisible(visible);
+		leftWing.showModel = visible;
+		rightWing.showModel = visible;
+	}
+}